@@ -0,0 +1,21 @@
+package aaa.utils.spring.integration.jpa;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * A count kept for a TTL, stale earlier once {@link QueryResultCache} invalidates its entity class:
+ * on committed entity changes and on bulk statements of repositories
+ */
+public record CachedCount<V>(V count, Class<?> entityClass, long generation, long createdNanos) {
+
+  /** {@code generation} has to be taken before counting, so that changes meanwhile aren't missed */
+  public CachedCount(V count, Class<?> entityClass, long generation) {
+    this(count, entityClass, generation, System.nanoTime());
+  }
+
+  public boolean isValid(Duration ttl) {
+    return System.nanoTime() - createdNanos <= ttl.toNanos()
+        && generation == QueryResultCache.generation(Set.of(entityClass));
+  }
+}
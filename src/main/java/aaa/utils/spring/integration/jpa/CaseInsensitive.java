@@ -0,0 +1,20 @@
+package aaa.utils.spring.integration.jpa;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Declares how case-insensitive string matching is done for the attribute */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CaseInsensitive {
+
+  CaseInsensitiveStrategy value();
+
+  /** Lower-cased shadow attribute of the same entity, for {@link CaseInsensitiveStrategy#SHADOW} */
+  String shadow() default "";
+
+  /** Collation name, for {@link CaseInsensitiveStrategy#COLLATION} */
+  String collation() default "";
+}
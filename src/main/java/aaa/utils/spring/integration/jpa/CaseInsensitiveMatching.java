@@ -0,0 +1,118 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.metamodel.Attribute;
+import java.lang.reflect.AnnotatedElement;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.experimental.UtilityClass;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+
+/**
+ * Case-insensitive string comparisons following the {@link CaseInsensitiveStrategy} declared for
+ * the attribute by {@link CaseInsensitive} or {@link #register}, values are expected lower-cased
+ */
+@UtilityClass
+public class CaseInsensitiveMatching {
+
+  public record Rule(CaseInsensitiveStrategy strategy, String shadow, String collation) {
+
+    public static Rule of(CaseInsensitiveStrategy strategy) {
+      return new Rule(strategy, null, null);
+    }
+
+    public static Rule ofShadow(String shadow) {
+      return new Rule(CaseInsensitiveStrategy.SHADOW, shadow, null);
+    }
+
+    public static Rule ofCollation(String collation) {
+      return new Rule(CaseInsensitiveStrategy.COLLATION, null, collation);
+    }
+  }
+
+  static final Map<String, Rule> registry = new ConcurrentHashMap<>();
+  static final Map<String, Optional<Rule>> declared = new ConcurrentHashMap<>();
+
+  /** Overrides {@link CaseInsensitive} declared on the attribute */
+  public static void register(Class<?> clazz, String attribute, Rule rule) {
+    registry.put(key(clazz, attribute), rule);
+  }
+
+  static String key(Class<?> clazz, String attribute) {
+    return clazz.getName() + "." + attribute;
+  }
+
+  static Rule ruleOf(Expression<?> expression) {
+    if (expression instanceof Path<?> path
+        && path.getModel() instanceof Attribute<?, ?> attribute) {
+      String key = key(attribute.getDeclaringType().getJavaType(), attribute.getName());
+      return Optional.ofNullable(registry.get(key))
+          .or(() -> declared.computeIfAbsent(key, ignored -> declaredRule(attribute)))
+          .orElseGet(() -> Rule.of(CaseInsensitiveStrategy.getDefault()));
+    }
+    return Rule.of(CaseInsensitiveStrategy.getDefault());
+  }
+
+  static Optional<Rule> declaredRule(Attribute<?, ?> attribute) {
+    return Optional.ofNullable(attribute.getJavaMember())
+        .filter(AnnotatedElement.class::isInstance)
+        .map(member -> ((AnnotatedElement) member).getAnnotation(CaseInsensitive.class))
+        .map(
+            annotation ->
+                new Rule(annotation.value(), annotation.shadow(), annotation.collation()));
+  }
+
+  /** Expression to compare with lower-cased values */
+  public static Expression<String> normalized(CriteriaBuilder cb, Expression<String> expression) {
+    Rule rule = ruleOf(expression);
+    return switch (rule.strategy()) {
+      case SHADOW -> isNotBlank(rule.shadow()) && expression instanceof Path<?> path
+          ? path.getParentPath().get(rule.shadow())
+          : cb.lower(expression);
+      case COLLATION -> isNotBlank(rule.collation()) && cb instanceof HibernateCriteriaBuilder hcb
+          ? hcb.collate(expression, rule.collation())
+          : cb.lower(expression);
+      default -> cb.lower(expression);
+    };
+  }
+
+  public static Predicate like(CriteriaBuilder cb, Expression<String> expression, String pattern) {
+    return ruleOf(expression).strategy() == CaseInsensitiveStrategy.ILIKE
+            && cb instanceof HibernateCriteriaBuilder hcb
+        ? hcb.ilike(expression, pattern)
+        : cb.like(normalized(cb, expression), pattern);
+  }
+
+  public static Predicate notLike(
+      CriteriaBuilder cb, Expression<String> expression, String pattern) {
+    return ruleOf(expression).strategy() == CaseInsensitiveStrategy.ILIKE
+            && cb instanceof HibernateCriteriaBuilder hcb
+        ? hcb.notIlike(expression, pattern)
+        : cb.notLike(normalized(cb, expression), pattern);
+  }
+
+  public static Predicate equal(CriteriaBuilder cb, Expression<String> expression, String value) {
+    return ruleOf(expression).strategy() == CaseInsensitiveStrategy.ILIKE
+            && cb instanceof HibernateCriteriaBuilder hcb
+        ? hcb.ilike(expression, escapeLike(value), '\\')
+        : cb.equal(normalized(cb, expression), value);
+  }
+
+  public static Predicate notEqual(
+      CriteriaBuilder cb, Expression<String> expression, String value) {
+    return ruleOf(expression).strategy() == CaseInsensitiveStrategy.ILIKE
+            && cb instanceof HibernateCriteriaBuilder hcb
+        ? hcb.notIlike(expression, escapeLike(value), '\\')
+        : cb.notEqual(normalized(cb, expression), value);
+  }
+
+  static String escapeLike(String value) {
+    return value == null ? null : value.replaceAll("([\\\\%_])", "\\\\$1");
+  }
+}
@@ -0,0 +1,22 @@
+package aaa.utils.spring.integration.jpa;
+
+public enum CaseInsensitiveStrategy {
+  /** {@code lower(column)} compared to the lower-cased value */
+  LOWER,
+  /** A precomputed lower-cased shadow attribute compared to the lower-cased value */
+  SHADOW,
+  /** {@code ilike}, equality is an {@code ilike} with escaped value */
+  ILIKE,
+  /** Column compared under a case-insensitive collation */
+  COLLATION;
+
+  static volatile CaseInsensitiveStrategy defaultStrategy = LOWER;
+
+  public static CaseInsensitiveStrategy getDefault() {
+    return defaultStrategy;
+  }
+
+  public static void setDefault(CaseInsensitiveStrategy strategy) {
+    defaultStrategy = strategy;
+  }
+}
@@ -0,0 +1,14 @@
+package aaa.utils.spring.integration.jpa;
+
+public enum CountStrategy {
+  /** count query unless the total follows from a partially filled page */
+  EXACT,
+  /** exact count reused for {@link QueryParams#countCacheTtl} per {@link QueryParams#cacheKey} */
+  CACHED,
+  /**
+   * No count query, one extra row is fetched to tell whether a next page exists. The total is not
+   * a count: it exceeds the rows seen by one when there is a next page, only {@code hasNext()} and
+   * {@link CountedPage#isTotalExact()} are meaningful.
+   */
+  NEXT_PAGE_ONLY
+}
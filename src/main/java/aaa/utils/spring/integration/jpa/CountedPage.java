@@ -0,0 +1,40 @@
+package aaa.utils.spring.integration.jpa;
+
+import java.util.List;
+import java.util.function.Function;
+import lombok.Getter;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+@Getter
+public class CountedPage<T> extends PageImpl<T> {
+
+  final CountStrategy countStrategy;
+  final boolean countQueried;
+
+  public CountedPage(
+      List<T> content,
+      Pageable pageable,
+      long total,
+      CountStrategy countStrategy,
+      boolean countQueried) {
+    super(content, pageable, total);
+    this.countStrategy = countStrategy;
+    this.countQueried = countQueried;
+  }
+
+  /** {@code false} when the total only signals a next page, see {@link CountStrategy} */
+  public boolean isTotalExact() {
+    return countStrategy != CountStrategy.NEXT_PAGE_ONLY || !hasNext();
+  }
+
+  @Override
+  public <U> CountedPage<U> map(Function<? super T, ? extends U> converter) {
+    return new CountedPage<>(
+        getConvertedContent(converter),
+        getPageable(),
+        getTotalElements(),
+        countStrategy,
+        countQueried);
+  }
+}
@@ -3,16 +3,23 @@ package aaa.utils.spring.integration.jpa;
 import static aaa.lambda.LambdaUtils.caster;
 import static aaa.utils.spring.integration.jpa.AbstractPOJOUtils.getPojoClass;
 import static java.util.Arrays.asList;
+import static org.apache.commons.lang3.StringUtils.split;
 import static org.apache.commons.lang3.StringUtils.strip;
 import static org.apache.commons.lang3.StringUtils.stripToNull;
 import static org.apache.commons.lang3.StringUtils.substring;
+import static org.apache.commons.lang3.StringUtils.substringAfter;
 
 import aaa.lang.reflection.IntrospectionUtils;
+import aaa.utils.spring.integration.jpa.JpaUtils.EntityGraphBuilder;
 import aaa.utils.spring.pojo.PojoUtils;
+import com.google.common.collect.Lists;
 import jakarta.persistence.Table;
 import jakarta.persistence.metamodel.Attribute;
 import jakarta.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiConsumer;
@@ -27,6 +34,10 @@ import lombok.experimental.UtilityClass;
 import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.SessionFactory;
+import org.hibernate.collection.spi.AbstractPersistentCollection;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.proxy.HibernateProxy;
 
 @UtilityClass
@@ -173,17 +184,171 @@ public class DaoUtils {
     if (entities == null || entities.isEmpty()) {
       cache.evictEntityData(clazz);
     } else {
-      entities.stream()
-          .filter(Objects::nonNull)
-          .map(caster(clazz))
-          .filter(Objects::nonNull)
-          .map(IAbstractPOJO::getId)
-          .filter(Objects::nonNull)
-          .distinct()
-          .forEach(id -> cache.evictEntityData(clazz, id));
+      cacheInvalidateIds(
+          sessionFactory,
+          clazz,
+          entities.stream()
+              .filter(Objects::nonNull)
+              .map(caster(clazz))
+              .filter(Objects::nonNull)
+              .map(IAbstractPOJO::getId)
+              .toList());
     }
   }
 
+  public static void cacheInvalidateIds(
+      SessionFactory sessionFactory, Class<?> clazz, Collection<?> ids) {
+    org.hibernate.Cache cache = sessionFactory.getCache();
+    ids.stream()
+        .filter(Objects::nonNull)
+        .distinct()
+        .forEach(id -> cache.evictEntityData(clazz, id));
+  }
+
+  /**
+   * Splits values into batches of at most {@code maxBatchSize}, each padded to a power of two by
+   * repeating its last value, so that IN lists of few distinct lengths reuse query plans
+   */
+  public static <X> List<List<X>> paddedBatches(List<X> values, int maxBatchSize) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Batch size has to be positive: " + maxBatchSize);
+    }
+    List<List<X>> batches = new ArrayList<>();
+    for (int from = 0; from < values.size(); from += maxBatchSize) {
+      List<X> batch =
+          new ArrayList<>(values.subList(from, Math.min(values.size(), from + maxBatchSize)));
+      int paddedSize =
+          batch.size() == 1
+              ? 1
+              : Math.min(maxBatchSize, Integer.highestOneBit(batch.size() - 1) << 1);
+      X last = batch.get(batch.size() - 1);
+      while (batch.size() < paddedSize) {
+        batch.add(last);
+      }
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  static final int INITIALIZE_BATCH_SIZE = 512;
+
+  /**
+   * Initializes {@code paths} of all entities level by level: uninitialized proxies are grouped by
+   * entity and multi-loaded, uninitialized collections are grouped by role and fetched by owner
+   * ids, so round trips depend on the graph depth rather than on the number of entities
+   */
+  public static <T, C extends Collection<? extends T>> C initializeAll(
+      C entities, EntityGraphBuilder<T> paths) {
+    initializeBatch(entities);
+    PathNode root = new PathNode();
+    paths.asPaths().forEach(path -> root.add(split(path, '.'), 0));
+    root.initialize(entities);
+    return entities;
+  }
+
+  static class PathNode {
+    Map<String, PathNode> children = new LinkedHashMap<>();
+
+    void add(String[] parts, int index) {
+      if (index < parts.length) {
+        children.computeIfAbsent(parts[index], key -> new PathNode()).add(parts, index + 1);
+      }
+    }
+
+    void initialize(Collection<?> values) {
+      children.forEach(
+          (attributeName, child) -> {
+            List<Object> fieldValues =
+                values.stream()
+                    .filter(Objects::nonNull)
+                    .map(
+                        value ->
+                            JpaUtils.accessor(getPojoClass(value), attributeName).apply(value))
+                    .filter(Objects::nonNull)
+                    .toList();
+            initializeBatch(fieldValues);
+            if (!child.children.isEmpty()) {
+              child.initialize(
+                  fieldValues.stream()
+                      .flatMap(
+                          value ->
+                              value instanceof Collection<?> collection
+                                  ? collection.stream()
+                                  : Stream.of(value))
+                      .filter(Objects::nonNull)
+                      .toList());
+            }
+          });
+    }
+  }
+
+  /** Initializes given proxies and collections with one query per entity or collection role */
+  public static void initializeBatch(Collection<?> values) {
+    Map<String, List<HibernateProxy>> proxies = new LinkedHashMap<>();
+    Map<String, List<PersistentCollection<?>>> collections = new LinkedHashMap<>();
+    for (Object value : values) {
+      if (value instanceof HibernateProxy proxy
+          && proxy.getHibernateLazyInitializer().isUninitialized()) {
+        proxies
+            .computeIfAbsent(
+                proxy.getHibernateLazyInitializer().getEntityName(), key -> new ArrayList<>())
+            .add(proxy);
+      } else if (value instanceof PersistentCollection<?> collection
+          && !collection.wasInitialized()) {
+        collections.computeIfAbsent(collection.getRole(), key -> new ArrayList<>()).add(collection);
+      }
+    }
+    proxies.forEach(DaoUtils::initializeProxies);
+    collections.forEach(DaoUtils::initializeCollections);
+  }
+
+  static void initializeProxies(String entityName, List<HibernateProxy> proxies) {
+    if (proxies.get(0).getHibernateLazyInitializer().getSession()
+        instanceof SessionImplementor session) {
+      session
+          .byMultipleIds(entityName)
+          .withBatchSize(INITIALIZE_BATCH_SIZE)
+          .multiLoad(
+              proxies.stream()
+                  .map(proxy -> proxy.getHibernateLazyInitializer().getInternalIdentifier())
+                  .distinct()
+                  .toList());
+    }
+    proxies.forEach(Hibernate::initialize);
+  }
+
+  static void initializeCollections(String role, List<PersistentCollection<?>> collections) {
+    if (collections.get(0) instanceof AbstractPersistentCollection<?> first
+        && first.getSession() instanceof SessionImplementor session) {
+      EntityPersister owner =
+          session
+              .getFactory()
+              .getMappingMetamodel()
+              .getCollectionDescriptor(role)
+              .getOwnerEntityPersister();
+      String query =
+          "select o from "
+              + owner.getEntityName()
+              + " o left join fetch o."
+              + substringAfter(role, owner.getEntityName() + ".")
+              + " where o."
+              + owner.getIdentifierPropertyName()
+              + " in (:ids)";
+      Lists.partition(
+              collections.stream().map(PersistentCollection::getKey).distinct().toList(),
+              INITIALIZE_BATCH_SIZE)
+          .forEach(
+              ids ->
+                  session
+                      .createSelectionQuery(query, Object.class)
+                      .setParameter("ids", ids)
+                      .list());
+    }
+    collections.stream()
+        .filter(collection -> !collection.wasInitialized())
+        .forEach(Hibernate::initialize);
+  }
+
   public static String getTable(Class<?> clazz) {
     return clazz.getAnnotation(Table.class).name();
   }
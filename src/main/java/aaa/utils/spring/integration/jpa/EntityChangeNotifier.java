@@ -0,0 +1,89 @@
+package aaa.utils.spring.integration.jpa;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Delivers committed entity changes of registered session factories to listeners. Bulk and native
+ * statements bypass Hibernate events and are not reported.
+ */
+public class EntityChangeNotifier
+    implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+  public record EntityChange(Class<?> entityClass, Object id) {}
+
+  static final EntityChangeNotifier INSTANCE = new EntityChangeNotifier();
+  static final List<Consumer<EntityChange>> listeners = new CopyOnWriteArrayList<>();
+  static final Map<SessionFactory, Boolean> registered = new WeakHashMap<>();
+
+  public static synchronized void register(SessionFactory sessionFactory) {
+    if (registered.put(sessionFactory, Boolean.TRUE) == null) {
+      EventListenerRegistry registry =
+          sessionFactory
+              .unwrap(SessionFactoryImplementor.class)
+              .getServiceRegistry()
+              .getService(EventListenerRegistry.class);
+      registry.appendListeners(EventType.POST_COMMIT_INSERT, INSTANCE);
+      registry.appendListeners(EventType.POST_COMMIT_UPDATE, INSTANCE);
+      registry.appendListeners(EventType.POST_COMMIT_DELETE, INSTANCE);
+    }
+  }
+
+  public static void addListener(Consumer<EntityChange> listener) {
+    listeners.add(listener);
+  }
+
+  public static void removeListener(Consumer<EntityChange> listener) {
+    listeners.remove(listener);
+  }
+
+  static void notify(EntityPersister persister, Object id) {
+    EntityChange change = new EntityChange(persister.getMappedClass(), id);
+    listeners.forEach(listener -> listener.accept(change));
+  }
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    notify(event.getPersister(), event.getId());
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    notify(event.getPersister(), event.getId());
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    notify(event.getPersister(), event.getId());
+  }
+
+  @Override
+  public void onPostInsertCommitFailed(PostInsertEvent event) {}
+
+  @Override
+  public void onPostUpdateCommitFailed(PostUpdateEvent event) {}
+
+  @Override
+  public void onPostDeleteCommitFailed(PostDeleteEvent event) {}
+
+  @Override
+  public boolean requiresPostCommitHandling(EntityPersister persister) {
+    return true;
+  }
+}
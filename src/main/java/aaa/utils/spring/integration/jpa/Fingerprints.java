@@ -0,0 +1,320 @@
+package aaa.utils.spring.integration.jpa;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AllArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Canonical JSON of filters, specs, sorts and pages: map keys, sets and {@link Unordered} filter
+ * fields are sorted, nulls are omitted, numbers are normalized, so equivalent requests give the
+ * same text and the same SHA-256 fingerprint. Lists and arrays keep their order and duplicates.
+ * Specs that are neither filters nor {@link Canonical} (e.g. lambdas) have no canonical form.
+ */
+@UtilityClass
+public class Fingerprints {
+
+  /** Value standing for the object in its canonical form */
+  public interface Canonical {
+    Object canonicalForm();
+  }
+
+  /** Filter field whose collection is a set of values: order and duplicates don't matter */
+  @Target(ElementType.FIELD)
+  @Retention(RetentionPolicy.RUNTIME)
+  public @interface Unordered {}
+
+  static final Map<Class<?>, List<Field>> fields = new ConcurrentHashMap<>();
+
+  static class NotCanonicalException extends RuntimeException {
+    NotCanonicalException(Class<?> clazz) {
+      super(clazz.getName(), null, false, false);
+    }
+  }
+
+  public static Optional<String> canonicalJson(Object value) {
+    try {
+      StringBuilder out = new StringBuilder();
+      write(out, value);
+      return Optional.of(out.toString());
+    } catch (NotCanonicalException e) {
+      return Optional.empty();
+    }
+  }
+
+  public static Optional<String> fingerprint(Object value) {
+    return canonicalJson(value).map(Fingerprints::digest);
+  }
+
+  @SneakyThrows
+  static String digest(String canonicalJson) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(
+            MessageDigest.getInstance("SHA-256").digest(canonicalJson.getBytes(UTF_8)));
+  }
+
+  /** {@code spec} known to be equivalent to {@code canonicalForm} */
+  public static <T> Specification<T> canonical(Specification<T> spec, Object canonicalForm) {
+    return new CanonicalSpecification<>(spec, canonicalForm);
+  }
+
+  /** Conjunction keeping the canonical forms of its parts, regardless of their order */
+  public static <T> Specification<T> allOf(Specification<T> left, Specification<T> right) {
+    return canonical(
+        Specification.allOf(left, right),
+        Map.of("allOf", new LinkedHashSet<>(List.of(left, right))));
+  }
+
+  @AllArgsConstructor
+  static class CanonicalSpecification<T> implements Specification<T>, Canonical {
+    Specification<T> spec;
+    Object canonicalForm;
+
+    @Override
+    public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+      return spec.toPredicate(root, query, cb);
+    }
+
+    @Override
+    public Object canonicalForm() {
+      return canonicalForm;
+    }
+  }
+
+  static void write(StringBuilder out, Object value) {
+    if (value == null) {
+      out.append("null");
+    } else if (value instanceof Canonical canonical) {
+      write(out, canonical.canonicalForm());
+    } else if (value instanceof Optional<?> optional) {
+      write(out, optional.orElse(null));
+    } else if (value instanceof Boolean) {
+      out.append(value);
+    } else if (value instanceof Number number) {
+      writeNumber(out, number);
+    } else if (value instanceof Enum<?> enumValue) {
+      writeString(out, enumValue.name());
+    } else if (value instanceof Class<?> clazz) {
+      writeString(out, clazz.getName());
+    } else if (value instanceof Date date) {
+      writeString(out, Instant.ofEpochMilli(date.getTime()).toString());
+    } else if (value instanceof CharSequence
+        || value instanceof Character
+        || value instanceof UUID
+        || value instanceof TemporalAccessor
+        || value instanceof TemporalAmount) {
+      writeString(out, value.toString());
+    } else if (value instanceof Map<?, ?> map) {
+      writeMap(out, map);
+    } else if (value instanceof Collection<?> collection) {
+      writeList(out, collection, value instanceof Set);
+    } else if (value.getClass().isArray()) {
+      writeList(out, arrayElements(value), false);
+    } else if (value instanceof Sort sort) {
+      writeList(
+          out,
+          sort.stream()
+              .map(
+                  order ->
+                      List.of(
+                          order.getProperty(),
+                          order.getDirection(),
+                          order.isIgnoreCase(),
+                          order.getNullHandling()))
+              .toList(),
+          false);
+    } else if (value instanceof Pageable pageable) {
+      Map<String, Object> page = new LinkedHashMap<>();
+      if (pageable.isPaged()) {
+        page.put("page", pageable.getPageNumber());
+        page.put("size", pageable.getPageSize());
+      }
+      page.put("sort", pageable.getSort());
+      writeProperties(out, page);
+    } else if (value instanceof KeysetScrollPosition position) {
+      writeProperties(
+          out, Map.of("direction", position.getDirection(), "keys", position.getKeys()));
+    } else if (value instanceof IAbstractFilter<?, ?>
+        || value instanceof SpecificationValuedMaker) {
+      writeBean(out, value);
+    } else {
+      throw new NotCanonicalException(value.getClass());
+    }
+  }
+
+  static void writeNumber(StringBuilder out, Number number) {
+    if (number instanceof Double || number instanceof Float) {
+      double doubleValue = number.doubleValue();
+      if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+        writeString(out, number.toString());
+        return;
+      }
+    }
+    out.append(new BigDecimal(number.toString()).stripTrailingZeros().toPlainString());
+  }
+
+  static void writeString(StringBuilder out, String value) {
+    out.append('"');
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"' -> out.append("\\\"");
+        case '\\' -> out.append("\\\\");
+        case '\n' -> out.append("\\n");
+        case '\r' -> out.append("\\r");
+        case '\t' -> out.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+        }
+      }
+    }
+    out.append('"');
+  }
+
+  /** Keys are tagged with their type, so that e.g. {@code 1} and {@code "1"} don't collide */
+  static void writeMap(StringBuilder out, Map<?, ?> map) {
+    Map<String, Object> tagged = new LinkedHashMap<>();
+    map.forEach((key, value) -> tagged.put(typeTag(key) + ":" + keyText(key), value));
+    writeProperties(out, tagged);
+  }
+
+  static String typeTag(Object key) {
+    return key == null
+        ? "null"
+        : key instanceof CharSequence || key instanceof Character
+            ? "string"
+            : key instanceof Number ? "number" : key.getClass().getName();
+  }
+
+  static String keyText(Object key) {
+    if (key instanceof CharSequence || key instanceof Character) {
+      return key.toString();
+    }
+    StringBuilder out = new StringBuilder();
+    write(out, key);
+    return out.toString();
+  }
+
+  static void writeProperties(StringBuilder out, Map<String, ?> properties) {
+    Map<String, Object> sorted = new TreeMap<>();
+    properties.forEach(
+        (key, value) -> {
+          if (value != null) {
+            sorted.put(key, value);
+          }
+        });
+    out.append('{');
+    boolean first = true;
+    for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+      if (!first) {
+        out.append(',');
+      }
+      first = false;
+      writeString(out, entry.getKey());
+      out.append(':');
+      write(out, entry.getValue());
+    }
+    out.append('}');
+  }
+
+  /** Elements are sorted and de-duplicated when {@code unordered} */
+  static void writeList(StringBuilder out, Collection<?> values, boolean unordered) {
+    List<String> elements = new ArrayList<>();
+    for (Object value : values) {
+      StringBuilder element = new StringBuilder();
+      write(element, value);
+      elements.add(element.toString());
+    }
+    out.append('[');
+    out.append(
+        String.join(",", unordered ? elements.stream().distinct().sorted().toList() : elements));
+    out.append(']');
+  }
+
+  static List<Object> arrayElements(Object array) {
+    List<Object> elements = new ArrayList<>();
+    for (int i = 0; i < Array.getLength(array); i++) {
+      elements.add(Array.get(array, i));
+    }
+    return elements;
+  }
+
+  @SneakyThrows
+  static void writeBean(StringBuilder out, Object bean) {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    properties.put("@type", bean.getClass());
+    for (Field field : fieldsOf(bean.getClass())) {
+      Object value = field.get(bean);
+      properties.put(
+          field.getName(),
+          field.isAnnotationPresent(Unordered.class) ? asSet(value) : value);
+    }
+    writeProperties(out, properties);
+  }
+
+  static Object asSet(Object value) {
+    return value instanceof Collection<?> collection
+        ? new LinkedHashSet<>(collection)
+        : value != null && value.getClass().isArray()
+            ? new LinkedHashSet<>(arrayElements(value))
+            : value;
+  }
+
+  static List<Field> fieldsOf(Class<?> clazz) {
+    return fields.computeIfAbsent(
+        clazz,
+        key -> {
+          List<Field> result = new ArrayList<>();
+          for (Class<?> type = key; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+              int modifiers = field.getModifiers();
+              if (!Modifier.isStatic(modifiers)
+                  && !Modifier.isTransient(modifiers)
+                  && !field.isSynthetic()) {
+                field.setAccessible(true);
+                result.add(field);
+              }
+            }
+          }
+          return result;
+        });
+  }
+}
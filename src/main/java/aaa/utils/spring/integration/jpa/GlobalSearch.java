@@ -0,0 +1,74 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.strip;
+
+import aaa.utils.spring.integration.jpa.IAbstractFilter.Context;
+import jakarta.persistence.criteria.Predicate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Global search providers registered per entity class, {@link Context#global} falls back to OR of
+ * LIKE over the fields when there is no provider or it can not serve the query
+ */
+@UtilityClass
+public class GlobalSearch {
+
+  @FunctionalInterface
+  public interface Provider {
+    /** Predicate matching the term, null when not supported by the current dialect */
+    Predicate search(Context<?> ctx, String term);
+  }
+
+  static final Map<Class<?>, Provider> providers = new ConcurrentHashMap<>();
+
+  public static void register(Class<?> clazz, Provider provider) {
+    providers.put(clazz, provider);
+  }
+
+  public static void unregister(Class<?> clazz) {
+    providers.remove(clazz);
+  }
+
+  static Optional<Predicate> search(Context<?> ctx, SpecificationValuedMaker globalSearch) {
+    return Optional.ofNullable(providers.get(ctx.root.getJavaType()))
+        .filter(provider -> globalSearch.getValue() instanceof String term && !isBlank(term))
+        .map(provider -> provider.search(ctx, strip((String) globalSearch.getValue())));
+  }
+
+  /** Full text match of a {@code tsvector} attribute, PostgreSQL only */
+  public static Provider fullText(String vectorPath, String config) {
+    return (ctx, term) ->
+        ctx.hasFunction(SqlFunctionContributor.FTS_MATCH)
+            ? ctx.cb.isTrue(
+                ctx.cb.function(
+                    SqlFunctionContributor.FTS_MATCH,
+                    Boolean.class,
+                    JpaUtils.makePathResolver(vectorPath).apply(ctx.root),
+                    ctx.valueAsExpression(config),
+                    ctx.valueAsExpression(term)))
+            : null;
+  }
+
+  /** Trigram word similarity over attributes, PostgreSQL with pg_trgm only */
+  public static Provider trigram(String... paths) {
+    return (ctx, term) ->
+        ctx.hasFunction(SqlFunctionContributor.TRGM_MATCH)
+            ? ctx.cb.or(
+                Stream.of(paths)
+                    .map(
+                        path ->
+                            ctx.cb.isTrue(
+                                ctx.cb.function(
+                                    SqlFunctionContributor.TRGM_MATCH,
+                                    Boolean.class,
+                                    JpaUtils.makePathResolver(path).apply(ctx.root),
+                                    ctx.valueAsExpression(term))))
+                    .toArray(Predicate[]::new))
+            : null;
+  }
+}
@@ -1,11 +1,11 @@
 package aaa.utils.spring.integration.jpa;
 
-import static aaa.i18n.ru.TransliterateUtils.variateFix;
 import static java.time.temporal.TemporalAdjusters.firstDayOfMonth;
 import static java.time.temporal.TemporalAdjusters.firstDayOfYear;
 import static java.util.Arrays.asList;
 import static java.util.Optional.ofNullable;
 import static java.util.function.Function.identity;
+import static org.apache.commons.lang3.StringUtils.lowerCase;
 import static org.apache.commons.lang3.StringUtils.split;
 import static org.apache.commons.lang3.StringUtils.stripToEmpty;
 
@@ -25,11 +25,15 @@ import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Subquery;
 import jakarta.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
+import java.lang.reflect.Array;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.temporal.Temporal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.BiFunction;
@@ -42,6 +46,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.query.sqm.internal.SqmCriteriaNodeBuilder;
 import org.springframework.data.jpa.domain.Specification;
@@ -93,10 +98,13 @@ public interface IAbstractFilter<
           .filter(SpecificationValuedMaker::isValueProvided)
           .map(
               fieldFilter ->
-                  or(
-                      fields.stream()
-                          .map(field -> with(fieldFilter.makeSpecification(field)))
-                          .toArray(Predicate[]::new)))
+                  GlobalSearch.search(this, fieldFilter)
+                      .orElseGet(
+                          () ->
+                              or(
+                                  fields.stream()
+                                      .map(field -> with(fieldFilter.makeSpecification(field)))
+                                      .toArray(Predicate[]::new))))
           .orElse(null);
     }
 
@@ -131,17 +139,23 @@ public interface IAbstractFilter<
           .filter(StringUtils::isNotBlank)
           .map(this::stripValue)
           .map(
-              value ->
-                  and(
-                      Stream.of(split(value))
-                          .filter(StringUtils::isNotBlank)
-                          .map(
-                              word ->
-                                  or(
-                                      variateFix(word)
-                                          .map(v -> like(attribute, v))
-                                          .toArray(Predicate[]::new)))
-                          .toArray(Predicate[]::new)))
+              value -> {
+                List<String> words =
+                    Stream.of(split(value)).filter(StringUtils::isNotBlank).toList();
+                int variantsPerWord = SearchTerms.variantsPerWord(words.size());
+                List<Predicate> wordPredicates = new ArrayList<>();
+                int predicates = 0;
+                boolean truncated = false;
+                for (String word : words) {
+                  List<String> variants = SearchTerms.variants(word, variantsPerWord);
+                  predicates += variants.size();
+                  truncated |= SearchTerms.isTruncated(word, variants);
+                  wordPredicates.add(
+                      or(variants.stream().map(v -> like(attribute, v)).toArray(Predicate[]::new)));
+                }
+                SearchTerms.recordPredicates(query, predicates, truncated);
+                return and(wordPredicates.toArray(Predicate[]::new));
+              })
           .orElse(null);
     }
 
@@ -155,9 +169,12 @@ public interface IAbstractFilter<
           .map(this::stripValue)
           .map(
               v ->
-                  cb.like(
-                      ignoreCase(root.get(attribute), ignoreCase),
-                      ignoreCase(valueAsExpression(matchMode.makeTemplate(v)), ignoreCase)))
+                  ignoreCase
+                      ? CaseInsensitiveMatching.like(
+                          cb,
+                          root.get(attribute),
+                          matchMode.makeTemplate(lowerCase(v, Locale.ROOT)))
+                      : cb.like(root.get(attribute), valueAsExpression(matchMode.makeTemplate(v))))
           .orElse(null);
     }
 
@@ -195,8 +212,20 @@ public interface IAbstractFilter<
       return eq(root.get(attribute), value, null);
     }
 
+    public Predicate eqIgnoreCase(Expression<String> expression, String value, boolean negated) {
+      return ofNullable(value)
+          .map(this::stripValue)
+          .map(v -> lowerCase(v, Locale.ROOT))
+          .map(
+              v ->
+                  negated
+                      ? CaseInsensitiveMatching.notEqual(cb, expression, v)
+                      : CaseInsensitiveMatching.equal(cb, expression, v))
+          .orElse(null);
+    }
+
     public Predicate eqIgnoreCase(SingularAttribute<T, String> attribute, String value) {
-      return eq(root.get(attribute), value, cb::lower);
+      return eqIgnoreCase(root.get(attribute), value, false);
     }
 
     public <X> Predicate eq(String attribute, X value) {
@@ -204,7 +233,7 @@ public interface IAbstractFilter<
     }
 
     public Predicate eq(String attribute, String value) {
-      return eq(root.get(attribute), value, cb::lower);
+      return eqIgnoreCase(root.get(attribute), value, false);
     }
 
     public <X> Predicate notEq(
@@ -217,7 +246,7 @@ public interface IAbstractFilter<
     }
 
     public Predicate notEqIgnoreCase(SingularAttribute<T, String> attribute, String value) {
-      return notEq(root.get(attribute), value, cb::lower);
+      return eqIgnoreCase(root.get(attribute), value, true);
     }
 
     public <X> Predicate notEq(String attribute, X value) {
@@ -225,7 +254,7 @@ public interface IAbstractFilter<
     }
 
     public Predicate notEqIgnoreCase(String attribute, String value) {
-      return notEq(root.get(attribute), value, cb::lower);
+      return eqIgnoreCase(root.get(attribute), value, true);
     }
 
     public <X, Y> Predicate eq(
@@ -356,24 +385,73 @@ public interface IAbstractFilter<
       return in;
     }
 
+    <X> Predicate makeIn(Expression<X> expression, Collection<X> values, InStrategy strategy) {
+      return values.isEmpty() || !isArrayIn(expression, strategy)
+          ? makeIn(cb.in(expression), values)
+          : cb.isTrue(
+              cb.function(
+                  SqlFunctionContributor.IN_ARRAY,
+                  Boolean.class,
+                  expression,
+                  valueAsExpression(asArray(expression, values))));
+    }
+
+    boolean hasFunction(String name) {
+      return cb instanceof SqmCriteriaNodeBuilder hcb
+          && hcb.getQueryEngine().getSqmFunctionRegistry().findFunctionDescriptor(name) != null;
+    }
+
+    boolean isArrayIn(Expression<?> expression, InStrategy strategy) {
+      return Nvl.nvl(strategy, InStrategy.getDefault()) == InStrategy.ARRAY
+          && expression.getJavaType() != null
+          && hasFunction(SqlFunctionContributor.IN_ARRAY)
+          && cb instanceof SqmCriteriaNodeBuilder hcb
+          && hcb.getTypeConfiguration()
+                  .getBasicTypeForJavaType(ClassUtils.primitiveToWrapper(expression.getJavaType()))
+              != null;
+    }
+
+    <X> X[] asArray(Expression<X> expression, Collection<X> values) {
+      Class<?> type = ClassUtils.primitiveToWrapper(expression.getJavaType());
+      return stripValue(values).toArray(size -> (X[]) Array.newInstance(type, size));
+    }
+
     public <X> Predicate in(SingularAttribute<T, X> attribute, Collection<X> values) {
-      return values == null ? null : makeIn(cb.in(root.get(attribute)), values);
+      return in(attribute, values, null);
+    }
+
+    public <X> Predicate in(
+        SingularAttribute<T, X> attribute, Collection<X> values, InStrategy strategy) {
+      return values == null ? null : makeIn(root.get(attribute), values, strategy);
     }
 
     public <X> Predicate in(String attribute, Collection<X> values) {
-      return values == null ? null : makeIn(cb.in(root.get(attribute)), values);
+      return in(attribute, values, null);
+    }
+
+    public <X> Predicate in(String attribute, Collection<X> values, InStrategy strategy) {
+      return values == null ? null : makeIn(root.get(attribute), values, strategy);
     }
 
     public <X> Predicate notIn(SingularAttribute<T, X> attribute, Collection<X> values) {
+      return notIn(attribute, values, null);
+    }
+
+    public <X> Predicate notIn(
+        SingularAttribute<T, X> attribute, Collection<X> values, InStrategy strategy) {
       return values == null
           ? null
-          : values.isEmpty() ? null : makeIn(cb.in(root.get(attribute)), values).not();
+          : values.isEmpty() ? null : makeIn(root.get(attribute), values, strategy).not();
     }
 
     public <X> Predicate notIn(String attribute, Collection<X> values) {
+      return notIn(attribute, values, null);
+    }
+
+    public <X> Predicate notIn(String attribute, Collection<X> values, InStrategy strategy) {
       return values == null
           ? null
-          : values.isEmpty() ? null : makeIn(cb.in(root.get(attribute)), values).not();
+          : values.isEmpty() ? null : makeIn(root.get(attribute), values, strategy).not();
     }
 
     public Predicate and(Predicate... restrictions) {
@@ -1,5 +1,6 @@
 package aaa.utils.spring.integration.jpa;
 
+import aaa.utils.spring.integration.jpa.Fingerprints.Unordered;
 import jakarta.persistence.criteria.Predicate;
 import java.io.Serializable;
 import java.util.Collection;
@@ -22,9 +23,9 @@ public class IdFilter<ID extends Serializable & Comparable<ID>, T extends IAbstr
   public static final String ID_NAME = "id";
 
   ID id;
-  Collection<ID> ids;
+  @Unordered Collection<ID> ids;
   ID notId;
-  Collection<ID> notIds;
+  @Unordered Collection<ID> notIds;
 
   boolean noData;
 
@@ -0,0 +1,427 @@
+package aaa.utils.spring.integration.jpa;
+
+import static aaa.utils.spring.integration.jpa.AbstractPOJOUtils.getPojoClass;
+import static java.util.Optional.ofNullable;
+import static org.apache.commons.lang3.StringUtils.lowerCase;
+import static org.apache.commons.lang3.StringUtils.split;
+import static org.apache.commons.lang3.StringUtils.upperCase;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate.BooleanOperator;
+import jakarta.persistence.criteria.Root;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import lombok.experimental.UtilityClass;
+import org.hibernate.metamodel.model.domain.PluralPersistentAttribute;
+import org.hibernate.query.sqm.tree.domain.SqmPath;
+import org.hibernate.query.sqm.tree.expression.SqmEnumLiteral;
+import org.hibernate.query.sqm.tree.expression.SqmExpression;
+import org.hibernate.query.sqm.tree.expression.SqmFunction;
+import org.hibernate.query.sqm.tree.expression.SqmJpaCriteriaParameterWrapper;
+import org.hibernate.query.sqm.tree.expression.SqmLiteral;
+import org.hibernate.query.sqm.tree.expression.ValueBindJpaCriteriaParameter;
+import org.hibernate.query.sqm.tree.from.SqmRoot;
+import org.hibernate.query.sqm.tree.predicate.SqmBetweenPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmBooleanExpressionPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmComparisonPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmGroupedPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmInListPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmJunctionPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmLikePredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmNegatablePredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmNegatedPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmNullnessPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmPredicate;
+import org.hibernate.query.sqm.tree.predicate.SqmTruthnessPredicate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.NullHandling;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Compiles the Hibernate criteria tree built by a {@link Specification} into a java predicate
+ * over loaded objects, with SQL three-valued logic: a row matches only when the condition is true.
+ * Supports the predicates made by {@link IAbstractFilter.Context} helpers and MatchModes over
+ * singular paths; subqueries, collection joins and unknown functions are rejected.
+ */
+@UtilityClass
+public class InMemoryEvaluator {
+
+  public static <T> Predicate<T> compile(
+      EntityManager em, Class<T> clazz, Specification<T> spec) {
+    if (spec == null) {
+      return value -> true;
+    }
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<T> query = cb.createQuery(clazz);
+    Root<T> root = query.from(clazz);
+    jakarta.persistence.criteria.Predicate predicate = spec.toPredicate(root, query, cb);
+    if (predicate == null) {
+      return value -> true;
+    }
+    if (!(predicate instanceof SqmPredicate sqmPredicate)) {
+      throw new UnsupportedOperationException("Only Hibernate criteria can be evaluated in memory");
+    }
+    Function<Object, Boolean> condition = predicate(sqmPredicate);
+    return value -> Boolean.TRUE.equals(condition.apply(value));
+  }
+
+  /** Filters, sorts (with id tiebreaker as in the repository) and pages given values */
+  public static <T> Page<T> findAll(
+      EntityManager em, Class<T> clazz, Collection<T> values, QueryParams<T> params) {
+    Pageable pageable = ofNullable(params.getPageable()).orElseGet(Pageable::unpaged);
+    List<T> filtered =
+        values.stream()
+            .filter(compile(em, clazz, params.getSpec()))
+            .sorted(
+                comparator(RepositoryWithEntityGraphImpl.withIdTiebreaker(pageable.getSort())))
+            .toList();
+    if (pageable.isUnpaged()) {
+      return new PageImpl<>(filtered, pageable, filtered.size());
+    }
+    int from = (int) Math.min(filtered.size(), pageable.getOffset());
+    int to = Math.min(filtered.size(), from + pageable.getPageSize());
+    return new PageImpl<>(filtered.subList(from, to), pageable, filtered.size());
+  }
+
+  /** Nulls are last ascending and first descending unless specified, as in PostgreSQL */
+  public static <T> Comparator<T> comparator(Sort sort) {
+    Comparator<T> comparator = (v1, v2) -> 0;
+    for (Order order : sort) {
+      Function<Object, Object> property = propertyPath(order.getProperty());
+      Comparator<Object> values = InMemoryEvaluator::compareValues;
+      boolean nullsFirst =
+          order.getNullHandling() == NullHandling.NATIVE
+              ? order.isDescending()
+              : order.getNullHandling() == NullHandling.NULLS_FIRST;
+      Comparator<Object> ordered = order.isAscending() ? values : values.reversed();
+      Comparator<Object> withNulls =
+          nullsFirst ? Comparator.nullsFirst(ordered) : Comparator.nullsLast(ordered);
+      Function<Object, Object> key =
+          order.isIgnoreCase() ? property.andThen(InMemoryEvaluator::lowerCaseString) : property;
+      comparator = comparator.thenComparing(key::apply, withNulls);
+    }
+    return comparator;
+  }
+
+  static Object lowerCaseString(Object value) {
+    return value instanceof String stringValue ? lowerCase(stringValue, Locale.ROOT) : value;
+  }
+
+  static Function<Object, Object> propertyPath(String path) {
+    Function<Object, Object> getter = Function.identity();
+    for (String name : split(path, '.')) {
+      getter = property(getter, name);
+    }
+    return getter;
+  }
+
+  static Function<Object, Object> property(Function<Object, Object> owner, String name) {
+    return value -> {
+      Object ownerValue = owner.apply(value);
+      return ownerValue == null
+          ? null
+          : JpaUtils.accessor(getPojoClass(ownerValue), name).apply(ownerValue);
+    };
+  }
+
+  static Function<Object, Boolean> predicate(SqmPredicate predicate) {
+    Function<Object, Boolean> condition = positive(predicate);
+    return predicate instanceof SqmNegatablePredicate negatable && negatable.isNegated()
+        ? value -> not(condition.apply(value))
+        : condition;
+  }
+
+  static Function<Object, Boolean> positive(SqmPredicate predicate) {
+    if (predicate instanceof SqmNegatedPredicate negated) {
+      Function<Object, Boolean> wrapped = predicate(negated.getWrappedPredicate());
+      return value -> not(wrapped.apply(value));
+    }
+    if (predicate instanceof SqmGroupedPredicate grouped) {
+      return predicate(grouped.getSubPredicate());
+    }
+    if (predicate instanceof SqmJunctionPredicate junction) {
+      List<Function<Object, Boolean>> parts =
+          junction.getPredicates().stream().map(InMemoryEvaluator::predicate).toList();
+      return junction.getOperator() == BooleanOperator.AND
+          ? value -> and(parts, value)
+          : value -> or(parts, value);
+    }
+    if (predicate instanceof SqmComparisonPredicate comparison) {
+      return comparison(comparison);
+    }
+    if (predicate instanceof SqmLikePredicate like) {
+      return like(like);
+    }
+    if (predicate instanceof SqmInListPredicate<?> in) {
+      Function<Object, Object> test = expression(in.getTestExpression());
+      List<Function<Object, Object>> list =
+          in.getListExpressions().stream().map(InMemoryEvaluator::expression).toList();
+      return value -> in(test.apply(value), list.stream().map(item -> item.apply(value)).toList());
+    }
+    if (predicate instanceof SqmNullnessPredicate nullness) {
+      Function<Object, Object> expression = expression(nullness.getExpression());
+      return value -> expression.apply(value) == null;
+    }
+    if (predicate instanceof SqmBooleanExpressionPredicate booleanExpression) {
+      Function<Object, Object> expression = expression(booleanExpression.getBooleanExpression());
+      return value -> (Boolean) expression.apply(value);
+    }
+    if (predicate instanceof SqmTruthnessPredicate truthness) {
+      Function<Object, Object> expression = expression(truthness.getExpression());
+      return value -> Objects.equals(expression.apply(value), truthness.getBooleanValue());
+    }
+    if (predicate instanceof SqmBetweenPredicate between) {
+      Function<Object, Object> expression = expression(between.getExpression());
+      Function<Object, Object> lower = expression(between.getLowerBound());
+      Function<Object, Object> upper = expression(between.getUpperBound());
+      return value -> {
+        Object v = expression.apply(value);
+        return and(
+            compare(v, lower.apply(value), result -> result >= 0),
+            compare(v, upper.apply(value), result -> result <= 0));
+      };
+    }
+    throw unsupported(predicate);
+  }
+
+  static Function<Object, Boolean> comparison(SqmComparisonPredicate comparison) {
+    Function<Object, Object> left = expression(comparison.getLeftHandExpression());
+    Function<Object, Object> right = expression(comparison.getRightHandExpression());
+    return switch (comparison.getSqmOperator()) {
+      case EQUAL -> value -> equal(left.apply(value), right.apply(value));
+      case NOT_EQUAL -> value -> not(equal(left.apply(value), right.apply(value)));
+      case NOT_DISTINCT_FROM -> value -> isNotDistinct(left.apply(value), right.apply(value));
+      case DISTINCT_FROM -> value -> !isNotDistinct(left.apply(value), right.apply(value));
+      case LESS_THAN -> value -> compare(left.apply(value), right.apply(value), c -> c < 0);
+      case LESS_THAN_OR_EQUAL ->
+          value -> compare(left.apply(value), right.apply(value), c -> c <= 0);
+      case GREATER_THAN -> value -> compare(left.apply(value), right.apply(value), c -> c > 0);
+      case GREATER_THAN_OR_EQUAL ->
+          value -> compare(left.apply(value), right.apply(value), c -> c >= 0);
+    };
+  }
+
+  static Function<Object, Boolean> like(SqmLikePredicate like) {
+    Function<Object, Object> match = expression(like.getMatchExpression());
+    Function<Object, Object> pattern = expression(like.getPattern());
+    Character escape =
+        like.getEscapeCharacter() == null
+            ? null
+            : (Character) expression(like.getEscapeCharacter()).apply(null);
+    boolean caseSensitive = like.isCaseSensitive();
+    return value -> {
+      Object matched = match.apply(value);
+      Object template = pattern.apply(value);
+      return matched == null || template == null
+          ? null
+          : likePattern((String) template, escape, caseSensitive)
+              .matcher((String) matched)
+              .matches();
+    };
+  }
+
+  static Pattern likePattern(String template, Character escape, boolean caseSensitive) {
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < template.length(); i++) {
+      char c = template.charAt(i);
+      if (escape != null && c == escape && i + 1 < template.length()) {
+        regex.append(Pattern.quote(String.valueOf(template.charAt(++i))));
+      } else if (c == '%') {
+        regex.append(".*");
+      } else if (c == '_') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(
+        regex.toString(),
+        Pattern.DOTALL | (caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+  }
+
+  static Function<Object, Object> expression(SqmExpression<?> expression) {
+    if (expression instanceof SqmPath<?> path) {
+      return path(path);
+    }
+    if (expression instanceof ValueBindJpaCriteriaParameter<?> parameter) {
+      Object constant = parameter.getValue();
+      return value -> constant;
+    }
+    if (expression instanceof SqmJpaCriteriaParameterWrapper<?> wrapper) {
+      return expression(wrapper.getJpaCriteriaParameter());
+    }
+    if (expression instanceof SqmEnumLiteral<?> literal) {
+      Object constant = literal.getEnumValue();
+      return value -> constant;
+    }
+    if (expression instanceof SqmLiteral<?> literal) {
+      Object constant = literal.getLiteralValue();
+      return value -> constant;
+    }
+    if (expression instanceof SqmFunction<?> function) {
+      return function(function);
+    }
+    throw unsupported(expression);
+  }
+
+  static Function<Object, Object> path(SqmPath<?> path) {
+    if (path instanceof SqmRoot<?>) {
+      return Function.identity();
+    }
+    if (path.getReferencedPathSource() instanceof PluralPersistentAttribute<?, ?, ?>
+        || path.getLhs() == null) {
+      throw unsupported(path);
+    }
+    return property(path(path.getLhs()), path.getReferencedPathSource().getPathName());
+  }
+
+  /** {@code collate} is taken as a case-insensitive collation */
+  static Function<Object, Object> function(SqmFunction<?> function) {
+    List<Function<Object, Object>> arguments =
+        function.getArguments().stream()
+            .map(argument -> expression((SqmExpression<?>) argument))
+            .toList();
+    return switch (lowerCase(function.getFunctionName(), Locale.ROOT)) {
+      case "lower", "collate" ->
+          value -> lowerCase((String) arguments.get(0).apply(value), Locale.ROOT);
+      case "upper" -> value -> upperCase((String) arguments.get(0).apply(value), Locale.ROOT);
+      case SqlFunctionContributor.IN_ARRAY ->
+          value -> {
+            Object array = arguments.get(1).apply(value);
+            return array == null
+                ? null
+                : in(
+                    arguments.get(0).apply(value),
+                    IntStream.range(0, Array.getLength(array))
+                        .mapToObj(i -> Array.get(array, i))
+                        .toList());
+          };
+      default -> throw unsupported(function);
+    };
+  }
+
+  static UnsupportedOperationException unsupported(Object node) {
+    return new UnsupportedOperationException(
+        "Can not evaluate in memory: " + node.getClass().getSimpleName());
+  }
+
+  static Boolean not(Boolean value) {
+    return value == null ? null : !value;
+  }
+
+  static Boolean and(Boolean v1, Boolean v2) {
+    return Boolean.FALSE.equals(v1) || Boolean.FALSE.equals(v2)
+        ? Boolean.FALSE
+        : v1 == null || v2 == null ? null : Boolean.TRUE;
+  }
+
+  static Boolean and(List<Function<Object, Boolean>> parts, Object value) {
+    Boolean result = Boolean.TRUE;
+    for (Function<Object, Boolean> part : parts) {
+      result = and(result, part.apply(value));
+      if (Boolean.FALSE.equals(result)) {
+        return result;
+      }
+    }
+    return result;
+  }
+
+  static Boolean or(List<Function<Object, Boolean>> parts, Object value) {
+    Boolean result = Boolean.FALSE;
+    for (Function<Object, Boolean> part : parts) {
+      Boolean partResult = part.apply(value);
+      if (Boolean.TRUE.equals(partResult)) {
+        return partResult;
+      }
+      result = partResult == null ? null : result;
+    }
+    return result;
+  }
+
+  static Boolean in(Object test, List<Object> values) {
+    if (test == null) {
+      return null;
+    }
+    Boolean result = Boolean.FALSE;
+    for (Object item : values) {
+      Boolean equal = equal(test, item);
+      if (Boolean.TRUE.equals(equal)) {
+        return equal;
+      }
+      result = equal == null ? null : result;
+    }
+    return result;
+  }
+
+  static Boolean equal(Object v1, Object v2) {
+    return v1 == null || v2 == null ? null : isNotDistinct(v1, v2);
+  }
+
+  static boolean isNotDistinct(Object v1, Object v2) {
+    if (v1 == null || v2 == null) {
+      return v1 == v2;
+    }
+    if (v1 instanceof IAbstractPOJO<?> pojo1 && v2 instanceof IAbstractPOJO<?> pojo2) {
+      return getPojoClass(pojo1) == getPojoClass(pojo2)
+          && Objects.equals(pojo1.getId(), pojo2.getId());
+    }
+    Object n1 = normalize(v1);
+    Object n2 = normalize(v2);
+    return n1 instanceof Comparable && n1.getClass() == n2.getClass()
+        ? compareValues(n1, n2) == 0
+        : Objects.equals(n1, n2);
+  }
+
+  static Boolean compare(Object v1, Object v2, Predicate<Integer> check) {
+    return v1 == null || v2 == null ? null : check.test(compareValues(v1, v2));
+  }
+
+  static int compareValues(Object v1, Object v2) {
+    Object n1 = normalize(v1);
+    Object n2 = normalize(v2);
+    if (n1 instanceof Enum<?> e1 && n2 instanceof String s2) {
+      return e1.name().compareTo(s2);
+    }
+    if (n1 instanceof String s1 && n2 instanceof Enum<?> e2) {
+      return s1.compareTo(e2.name());
+    }
+    return ((Comparable<Object>) n1).compareTo(n2);
+  }
+
+  /** Numbers to BigDecimal, dates to LocalDateTime, as SQL compares them */
+  static Object normalize(Object value) {
+    if (value instanceof BigDecimal) {
+      return value;
+    }
+    if (value instanceof Number number) {
+      return new BigDecimal(number.toString());
+    }
+    if (value instanceof LocalDate date) {
+      return date.atStartOfDay();
+    }
+    if (value instanceof Date date) {
+      return LocalDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneId.systemDefault());
+    }
+    return value;
+  }
+}
@@ -0,0 +1,21 @@
+package aaa.utils.spring.integration.jpa;
+
+public enum InStrategy {
+  /** {@code in (?, ?, ...)}, one parameter per value */
+  PARAMETERS,
+  /**
+   * {@code = any(?)} with a single array parameter, falls back to {@link #PARAMETERS} for dialects
+   * without {@link SqlFunctionContributor#IN_ARRAY}
+   */
+  ARRAY;
+
+  static volatile InStrategy defaultStrategy = PARAMETERS;
+
+  public static InStrategy getDefault() {
+    return defaultStrategy;
+  }
+
+  public static void setDefault(InStrategy strategy) {
+    defaultStrategy = strategy;
+  }
+}
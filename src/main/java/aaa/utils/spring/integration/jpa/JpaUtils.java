@@ -1,7 +1,6 @@
 package aaa.utils.spring.integration.jpa;
 
 import static aaa.utils.spring.integration.jpa.AbstractPOJOUtils.getPojoClass;
-import static aaa.utils.spring.integration.jpa.DaoUtils.initialize;
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.split;
@@ -10,22 +9,34 @@ import aaa.lang.reflection.IntrospectionUtils;
 import aaa.utils.spring.integration.jpa.JpaUtils.EntityGraphBuilder.PseudoSubgraph;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import jakarta.persistence.AttributeNode;
 import jakarta.persistence.EntityGraph;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Subgraph;
 import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.metamodel.Attribute;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Stream;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -35,6 +46,10 @@ import lombok.SneakyThrows;
 import lombok.With;
 import lombok.experimental.Delegate;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.graph.spi.RootGraphImplementor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
 
 public class JpaUtils {
 
@@ -46,12 +61,33 @@ public class JpaUtils {
       From currentJoin = root;
       String[] parts = split(field, ".");
       for (int i = 0; i < parts.length - 1; i++) {
-        currentJoin = currentJoin.join(parts[i], JoinType.LEFT);
+        currentJoin = leftJoin(currentJoin, parts[i]);
       }
       return currentJoin.get(parts[parts.length - 1]);
     };
   }
 
+  /**
+   * Reuses a singular LEFT join or fetch of the attribute already made on {@code from}, so that
+   * filters and sorts touching the same association share one join. Collections are joined anew
+   * every time: a shared join would make every predicate hold for one and the same element.
+   */
+  static From<?, ?> leftJoin(From<?, ?> from, String attributeName) {
+    return Stream.concat(
+            from.getJoins().stream().filter(join -> join.getOn() == null),
+            from.getFetches().stream()
+                .filter(fetch -> fetch instanceof Join)
+                .map(fetch -> (Join<?, ?>) fetch))
+        .filter(
+            join ->
+                join.getJoinType() == JoinType.LEFT
+                    && !join.getAttribute().isCollection()
+                    && StringUtils.equals(join.getAttribute().getName(), attributeName))
+        .findFirst()
+        .<From<?, ?>>map(join -> join)
+        .orElseGet(() -> from.join(attributeName, JoinType.LEFT));
+  }
+
   public enum LikeMatchMode {
     ANYWHERE {
       public String makeTemplate(String value) {
@@ -99,14 +135,51 @@ public class JpaUtils {
     return field + "." + subfield.getName() + "." + subsubfield.getName();
   }
 
-  static Cache<EntityGraphBuilder, EntityGraph> cache;
+  static volatile int entityGraphCacheSize = 1000;
 
-  static {
-    setEntityGraphCacheSize(1000);
-  }
+  static final Cache<SessionFactory, Cache<GraphKey, EntityGraph<?>>> graphCaches =
+      CacheBuilder.newBuilder().weakKeys().build();
 
+  /** Applies to graph caches created afterwards, existing caches are dropped */
   public static void setEntityGraphCacheSize(int size) {
-    cache = CacheBuilder.newBuilder().maximumSize(size).build();
+    entityGraphCacheSize = size;
+    graphCaches.invalidateAll();
+  }
+
+  @SneakyThrows
+  static Cache<GraphKey, EntityGraph<?>> graphCache(EntityManagerFactory entityManagerFactory) {
+    return graphCaches.get(
+        entityManagerFactory.unwrap(SessionFactory.class),
+        () -> CacheBuilder.newBuilder().maximumSize(entityGraphCacheSize).recordStats().build());
+  }
+
+  /** Sum of a statistic over the entity graph caches of all factories */
+  public static long entityGraphCacheStat(ToLongFunction<CacheStats> statistic) {
+    return graphCaches.asMap().values().stream()
+        .mapToLong(graphCache -> statistic.applyAsLong(graphCache.stats()))
+        .sum();
+  }
+
+  public static long entityGraphCacheSize() {
+    return graphCaches.asMap().values().stream().mapToLong(Cache::size).sum();
+  }
+
+  /** Builds declared graphs ahead of the first query using them */
+  public static void prewarmEntityGraphs(
+      EntityManagerFactory entityManagerFactory, Collection<EntityGraphBuilder<?>> graphs) {
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    try {
+      graphs.forEach(graph -> graph.build(entityManager));
+    } finally {
+      entityManager.close();
+    }
+  }
+
+  /** Immutable cache key of a graph: entity class and sorted distinct paths */
+  record GraphKey(Class<?> clazz, List<String> paths) {
+    static GraphKey of(Class<?> clazz, Collection<String> paths) {
+      return new GraphKey(clazz, paths.stream().distinct().sorted().toList());
+    }
   }
 
   @AllArgsConstructor(access = AccessLevel.PRIVATE)
@@ -117,6 +190,10 @@ public class JpaUtils {
     private @With(AccessLevel.PRIVATE) Class<T> clazz;
     List<String> paths = new ArrayList<>();
 
+    public static <T> EntityGraphBuilder<T> builder(Class<T> clazz) {
+      return EntityGraphBuilder.<T>builder().withClazz(clazz);
+    }
+
     public <Y> EntityGraphBuilder<T> path(Attribute<T, Y> field) {
       paths.add(JpaUtils.path(field));
       return this;
@@ -151,19 +228,23 @@ public class JpaUtils {
     @SneakyThrows
     public EntityGraph<T> build(EntityManager entityManager) {
       assert clazz != null;
-      Collections.sort(paths);
       if (paths.isEmpty()) {
         return null;
       }
+      GraphKey key = GraphKey.of(clazz, paths);
       return (EntityGraph<T>)
-          cache.get(
-              this.withClazz(clazz),
-              () -> {
-                PseudoSubgraph<T> subgraph =
-                    PseudoSubgraph.of(entityManager.createEntityGraph(clazz));
-                paths.forEach(path -> makeGraph(asList(StringUtils.split(path, '.')), subgraph));
-                return subgraph.entityGraph;
-              });
+          graphCache(entityManager.getEntityManagerFactory())
+              .get(
+                  key,
+                  () -> {
+                    PseudoSubgraph<T> subgraph =
+                        PseudoSubgraph.of(entityManager.createEntityGraph(clazz));
+                    key.paths()
+                        .forEach(path -> makeGraph(asList(StringUtils.split(path, '.')), subgraph));
+                    return subgraph.entityGraph instanceof RootGraphImplementor<T> graph
+                        ? graph.makeImmutableCopy(null)
+                        : subgraph.entityGraph;
+                  });
     }
 
     @SneakyThrows
@@ -206,33 +287,130 @@ public class JpaUtils {
     }
   }
 
+  static final Map<Class<?>, Map<String, Function<Object, Object>>> accessors =
+      new ConcurrentHashMap<>();
+
+  /** Plans by sorted graph paths, so equal graphs share a plan whatever their instances */
+  static final Cache<List<String>, SelectPlan> selectPlans =
+      CacheBuilder.newBuilder().maximumSize(1000).build();
+
+  static Function<Object, Object> accessor(Class<?> clazz, String attributeName) {
+    return accessors
+        .computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(attributeName, name -> compileAccessor(clazz, name));
+  }
+
+  /**
+   * Getter call generated with LambdaMetafactory, or a field MethodHandle when there is no getter,
+   * so reading values of rows involves no reflection
+   */
+  @SneakyThrows
+  static Function<Object, Object> compileAccessor(Class<?> clazz, String name) {
+    MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+    PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(clazz, name);
+    if (descriptor != null && descriptor.getReadMethod() != null) {
+      MethodHandle getter = lookup.unreflect(descriptor.getReadMethod());
+      return (Function<Object, Object>)
+          LambdaMetafactory.metafactory(
+                  lookup,
+                  "apply",
+                  MethodType.methodType(Function.class),
+                  MethodType.methodType(Object.class, Object.class),
+                  getter,
+                  getter.type().wrap().changeParameterType(0, clazz))
+              .getTarget()
+              .invoke();
+    }
+    Field field = ReflectionUtils.findField(clazz, name);
+    if (field == null) {
+      return (Function<Object, Object>) IntrospectionUtils.asGetter(clazz, name);
+    }
+    MethodHandle getter =
+        MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+            .unreflectGetter(field)
+            .asType(MethodType.methodType(Object.class, Object.class));
+    return value -> invoke(getter, value);
+  }
+
+  @SneakyThrows
+  static Object invoke(MethodHandle getter, Object value) {
+    return getter.invokeExact(value);
+  }
+
   static <T> T selectSubgraph(T pojo, Subgraph<T> subgraph) {
-    subgraph
-        .getAttributeNodes()
-        .forEach(
-            attributeNode -> {
-              Object fieldValue =
-                  initialize(
-                      IntrospectionUtils.asGetter(
-                              getPojoClass(pojo), attributeNode.getAttributeName())
-                          .apply(pojo));
-              if (fieldValue != null) {
-                Stream.ofNullable(attributeNode.getSubgraphs())
-                    .flatMap(subgraphs -> subgraphs.values().stream())
-                    .forEach(
-                        nestedSubgraph -> {
-                          if (fieldValue instanceof Collection collection) {
-                            collection.forEach(
-                                subValue -> selectSubgraph(subValue, nestedSubgraph));
-                          } else {
-                            selectSubgraph(fieldValue, nestedSubgraph);
-                          }
-                        });
-              }
-            });
+    if (pojo != null) {
+      selectSubgraph(List.of(pojo), subgraph);
+    }
     return pojo;
   }
 
+  /** Initializes the subgraph level by level for all values, so lazy loads can be batched */
+  @SneakyThrows
+  static <T, C extends Collection<T>> C selectSubgraph(C pojos, Subgraph<T> subgraph) {
+    selectPlans
+        .get(
+            new PathExtractor<T>().iterate(subgraph).stream().sorted().toList(),
+            () -> SelectPlan.compile(subgraph))
+        .apply(pojos);
+    return pojos;
+  }
+
+  @AllArgsConstructor
+  static class SelectPlan {
+    List<String> attributeNames;
+    List<SelectPlan> nested;
+
+    static SelectPlan compile(Subgraph<?> subgraph) {
+      List<String> attributeNames = new ArrayList<>();
+      List<SelectPlan> nested = new ArrayList<>();
+      subgraph
+          .getAttributeNodes()
+          .forEach(
+              attributeNode -> {
+                attributeNames.add(attributeNode.getAttributeName());
+                nested.add(
+                    Stream.ofNullable(attributeNode.getSubgraphs())
+                        .flatMap(subgraphs -> subgraphs.values().stream())
+                        .map(SelectPlan::compile)
+                        .reduce(SelectPlan::merge)
+                        .orElse(null));
+              });
+      return new SelectPlan(attributeNames, nested);
+    }
+
+    SelectPlan merge(SelectPlan other) {
+      List<String> mergedNames = new ArrayList<>(attributeNames);
+      List<SelectPlan> mergedNested = new ArrayList<>(nested);
+      mergedNames.addAll(other.attributeNames);
+      mergedNested.addAll(other.nested);
+      return new SelectPlan(mergedNames, mergedNested);
+    }
+
+    void apply(Collection<?> pojos) {
+      for (int i = 0; i < attributeNames.size(); i++) {
+        List<Object> values = new ArrayList<>();
+        for (Object pojo : pojos) {
+          Object fieldValue = accessor(getPojoClass(pojo), attributeNames.get(i)).apply(pojo);
+          if (fieldValue != null) {
+            values.add(fieldValue);
+          }
+        }
+        DaoUtils.initializeBatch(values);
+        List<Object> nestedValues = new ArrayList<>();
+        for (Object fieldValue : values) {
+          if (fieldValue instanceof Collection<?> collection) {
+            collection.stream().filter(Objects::nonNull).forEach(nestedValues::add);
+          } else {
+            nestedValues.add(fieldValue);
+          }
+        }
+        if (nested.get(i) != null && !nestedValues.isEmpty()) {
+          nested.get(i).apply(nestedValues);
+        }
+      }
+    }
+  }
+
   static class PathExtractor<T> {
     LinkedList<String> stack = new LinkedList<>();
     List<String> paths = new ArrayList<>();
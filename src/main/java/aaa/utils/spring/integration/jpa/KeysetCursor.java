@@ -0,0 +1,160 @@
+package aaa.utils.spring.integration.jpa;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.split;
+import static org.apache.commons.lang3.StringUtils.substringAfter;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.experimental.UtilityClass;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.domain.Window;
+
+/**
+ * Opaque continuation tokens for keyset (seek) pagination. Decoded values stay strings until they
+ * are converted to the type of the sorted path.
+ */
+@UtilityClass
+public class KeysetCursor {
+
+  public static String encode(KeysetScrollPosition position) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(
+            position.getKeys().entrySet().stream()
+                .map(
+                    e ->
+                        e.getValue() == null
+                            ? URLEncoder.encode(e.getKey(), UTF_8)
+                            : URLEncoder.encode(e.getKey(), UTF_8)
+                                + "="
+                                + URLEncoder.encode(asString(e.getValue()), UTF_8))
+                .collect(Collectors.joining("&"))
+                .getBytes(UTF_8));
+  }
+
+  public static KeysetScrollPosition decode(String token) {
+    if (isBlank(token)) {
+      return ScrollPosition.keyset();
+    }
+    Map<String, Object> keys = new LinkedHashMap<>();
+    for (String pair : split(new String(Base64.getUrlDecoder().decode(token), UTF_8), '&')) {
+      keys.put(
+          URLDecoder.decode(substringBefore(pair, "="), UTF_8),
+          pair.contains("=") ? URLDecoder.decode(substringAfter(pair, "="), UTF_8) : null);
+    }
+    return ScrollPosition.forward(keys);
+  }
+
+  public static Optional<String> continuationToken(Window<?> window) {
+    return window.hasNext() && !window.isEmpty()
+        ? Optional.of(encode((KeysetScrollPosition) window.positionAt(window.size() - 1)))
+        : Optional.empty();
+  }
+
+  public static KeysetScrollPosition positionOf(Object entity, Sort sort) {
+    BeanWrapperImpl wrapper = new BeanWrapperImpl(entity);
+    Map<String, Object> keys = new LinkedHashMap<>();
+    sort.forEach(
+        order -> keys.put(order.getProperty(), wrapper.getPropertyValue(order.getProperty())));
+    return ScrollPosition.forward(keys);
+  }
+
+  /** {@code (c1, c2, ...) > (v1, v2, ...)} per sort direction; sort columns must be non-null */
+  public static <T> Predicate toPredicate(
+      KeysetScrollPosition position, Sort sort, Root<T> root, CriteriaBuilder cb) {
+    if (position == null || position.isInitial()) {
+      return null;
+    }
+    if (position.scrollsBackward()) {
+      throw new UnsupportedOperationException("Backward keyset scrolling is not supported");
+    }
+    List<Predicate> alternatives = new ArrayList<>();
+    List<Predicate> equalities = new ArrayList<>();
+    for (Order order : sort) {
+      Path path = JpaUtils.makePathResolver(order.getProperty()).apply(root);
+      if (!position.getKeys().containsKey(order.getProperty())) {
+        throw new IllegalArgumentException(
+            "Keyset position has no value for sort property " + order.getProperty());
+      }
+      Comparable value = (Comparable) convert(position.getKeys().get(order.getProperty()), path);
+      if (value == null) {
+        throw new IllegalArgumentException(
+            "Keyset pagination requires non-null sort property " + order.getProperty());
+      }
+      List<Predicate> alternative = new ArrayList<>(equalities);
+      alternative.add(
+          order.isAscending()
+              ? cb.greaterThan((Expression<Comparable>) path, value)
+              : cb.lessThan((Expression<Comparable>) path, value));
+      alternatives.add(cb.and(alternative.toArray(Predicate[]::new)));
+      equalities.add(cb.equal(path, value));
+    }
+    return cb.or(alternatives.toArray(Predicate[]::new));
+  }
+
+  static String asString(Object value) {
+    return value instanceof Date date
+        ? Instant.ofEpochMilli(date.getTime()).toString()
+        : value instanceof TemporalAccessor
+            ? value.toString()
+            : DefaultConversionService.getSharedInstance().convert(value, String.class);
+  }
+
+  static final Map<Class<?>, Function<String, Object>> TEMPORAL_PARSERS =
+      Map.of(
+          Instant.class, Instant::parse,
+          LocalDate.class, LocalDate::parse,
+          LocalDateTime.class, LocalDateTime::parse,
+          LocalTime.class, LocalTime::parse,
+          OffsetDateTime.class, OffsetDateTime::parse,
+          OffsetTime.class, OffsetTime::parse,
+          ZonedDateTime.class, ZonedDateTime::parse);
+
+  static Object convert(Object value, Path<?> path) {
+    return convert(value, path.getJavaType());
+  }
+
+  /** java.time values are parsed from ISO strings, the conversion service has no such parsers */
+  static Object convert(Object value, Class<?> type) {
+    if (!(value instanceof String stringValue) || type == null || type == String.class) {
+      return value;
+    }
+    if (Date.class.isAssignableFrom(type)) {
+      return Date.from(Instant.parse(stringValue));
+    }
+    Function<String, Object> parser = TEMPORAL_PARSERS.get(type);
+    return parser != null
+        ? parser.apply(stringValue)
+        : DefaultConversionService.getSharedInstance().convert(stringValue, type);
+  }
+}
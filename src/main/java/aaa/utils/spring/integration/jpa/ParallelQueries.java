@@ -0,0 +1,215 @@
+package aaa.utils.spring.integration.jpa;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.sql.DataSource;
+import lombok.experimental.UtilityClass;
+import org.hibernate.Session;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/** Runs read-only queries on a separate EntityManager (and connection) of the same factory */
+@UtilityClass
+public class ParallelQueries {
+
+  /** Submitted queries of a factory run on {@code executor}, at most {@code permits} at once */
+  public record Settings(
+      Executor executor,
+      Semaphore permits,
+      Predicate<EntityManagerFactory> spareConnectionsGuard) {
+
+    /** e.g. guard {@code factory -> hikariPool.getIdleConnections() > 2} */
+    public static Settings of(
+        Executor executor,
+        int maxConcurrentQueries,
+        Predicate<EntityManagerFactory> spareConnectionsGuard) {
+      return new Settings(executor, new Semaphore(maxConcurrentQueries), spareConnectionsGuard);
+    }
+  }
+
+  static final int MIN_IDLE_CONNECTIONS = 2;
+  static final Settings DEFAULT_SETTINGS =
+      Settings.of(makeDefaultExecutor(), 4, ParallelQueries::hasIdleConnections);
+  static final Map<EntityManagerFactory, Settings> settings =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  static final ThreadLocal<EntityManager> current = new ThreadLocal<>();
+
+  static Executor makeDefaultExecutor() {
+    AtomicInteger counter = new AtomicInteger();
+    return Executors.newCachedThreadPool(
+        runnable -> {
+          Thread thread = new Thread(runnable, "parallel-query-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  public static void configure(EntityManagerFactory factory, Settings factorySettings) {
+    settings.put(factory, factorySettings);
+  }
+
+  static Settings settingsOf(EntityManagerFactory factory) {
+    return settings.getOrDefault(factory, DEFAULT_SETTINGS);
+  }
+
+  /**
+   * Default guard: at least {@link #MIN_IDLE_CONNECTIONS} idle connections in a Hikari pool, pools
+   * without such statistics are not limited
+   */
+  static boolean hasIdleConnections(EntityManagerFactory factory) {
+    try {
+      Optional<DataSource> dataSource = dataSource(factory);
+      if (dataSource.isEmpty()) {
+        return true;
+      }
+      Object pool =
+          dataSource.get().getClass().getMethod("getHikariPoolMXBean").invoke(dataSource.get());
+      return pool == null
+          || (int) pool.getClass().getMethod("getIdleConnections").invoke(pool)
+              >= MIN_IDLE_CONNECTIONS;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return true;
+    }
+  }
+
+  /** DataSource of the factory's connection provider, when it exposes one */
+  static Optional<DataSource> dataSource(EntityManagerFactory factory) {
+    ConnectionProvider connectionProvider =
+        factory
+            .unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .getService(ConnectionProvider.class);
+    return connectionProvider != null && connectionProvider.isUnwrappableAs(DataSource.class)
+        ? Optional.of(connectionProvider.unwrap(DataSource.class))
+        : Optional.empty();
+  }
+
+  public static <R> R readOnly(EntityManagerFactory factory, Function<EntityManager, R> work) {
+    EntityManager em = factory.createEntityManager();
+    EntityManager enclosing = current.get();
+    current.set(em);
+    try {
+      em.unwrap(Session.class).setDefaultReadOnly(true);
+      return work.apply(em);
+    } finally {
+      if (enclosing == null) {
+        current.remove();
+      } else {
+        current.set(enclosing);
+      }
+      em.close();
+    }
+  }
+
+  /**
+   * EntityManager delegating to the one of the enclosing {@link #readOnly} call on the calling
+   * thread, lets a single repository instance serve all such calls
+   */
+  public static EntityManager currentReadOnly(EntityManagerFactory factory) {
+    return (EntityManager)
+        Proxy.newProxyInstance(
+            EntityManager.class.getClassLoader(),
+            new Class<?>[] {EntityManager.class},
+            (proxy, method, args) ->
+                switch (method.getName()) {
+                  case "equals" -> proxy == args[0];
+                  case "hashCode" -> System.identityHashCode(proxy);
+                  case "toString" -> "Read-only EntityManager of the current thread";
+                  case "getEntityManagerFactory" -> factory;
+                  default -> invoke(method, currentOrFail(), args);
+                });
+  }
+
+  static EntityManager currentOrFail() {
+    EntityManager em = current.get();
+    if (em == null) {
+      throw new IllegalStateException("No read-only EntityManager is bound to the thread");
+    }
+    return em;
+  }
+
+  static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Empty when no connection can be spared, work is routed as the calling thread is */
+  public static <R> Optional<CompletableFuture<R>> trySubmit(
+      EntityManagerFactory factory, Function<EntityManager, R> work) {
+    return trySubmit(factory, ReadReplicas.isOnReplica(), work);
+  }
+
+  /**
+   * Empty when no connection can be spared, the caller is expected to run the work itself.
+   * {@code onReplica} routes the work to a replica, thread-local routing doesn't reach the executor
+   */
+  public static <R> Optional<CompletableFuture<R>> trySubmit(
+      EntityManagerFactory factory, boolean onReplica, Function<EntityManager, R> work) {
+    Settings factorySettings = settingsOf(factory);
+    Semaphore taken = factorySettings.permits();
+    if (!factorySettings.spareConnectionsGuard().test(factory) || !taken.tryAcquire()) {
+      return Optional.empty();
+    }
+    // the permit is returned by the work, or on cancellation when the work never started
+    AtomicBoolean claimed = new AtomicBoolean();
+    try {
+      CompletableFuture<R> future =
+          CompletableFuture.supplyAsync(
+              () -> {
+                if (!claimed.compareAndSet(false, true)) {
+                  return null;
+                }
+                try {
+                  return ReadReplicas.routed(onReplica, () -> readOnly(factory, work));
+                } finally {
+                  taken.release();
+                }
+              },
+              factorySettings.executor());
+      future.whenComplete(
+          (result, failure) -> {
+            if (future.isCancelled() && claimed.compareAndSet(false, true)) {
+              taken.release();
+            }
+          });
+      return Optional.of(future);
+    } catch (RuntimeException e) {
+      taken.release();
+      throw e;
+    }
+  }
+
+  /** Result of submitted work, failures rethrown unwrapped so they are translated as usual */
+  public static <R> R await(CompletableFuture<R> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.apache.commons.lang3.StringUtils.split;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.SingularAttribute;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.experimental.UtilityClass;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+/**
+ * Selects only the given paths with one tuple query and reads rows as maps keyed by path, instead
+ * of loading entities and walking the subgraph
+ */
+@UtilityClass
+public class Projections {
+
+  public static List<String> projectionPaths(String idName, Collection<String> selectPaths) {
+    Set<String> paths = new LinkedHashSet<>();
+    paths.add(idName);
+    paths.addAll(selectPaths);
+    return List.copyOf(paths);
+  }
+
+  /** Paths through collections would multiply rows and are left to subgraph walking */
+  public static boolean isProjectable(
+      Metamodel metamodel, Class<?> clazz, Collection<String> paths) {
+    return paths.stream().allMatch(path -> isSingularPath(metamodel, clazz, path));
+  }
+
+  static boolean isSingularPath(Metamodel metamodel, Class<?> clazz, String path) {
+    ManagedType<?> type = metamodel.managedType(clazz);
+    String[] parts = split(path, ".");
+    for (int i = 0; i < parts.length; i++) {
+      Attribute<?, ?> attribute = type.getAttribute(parts[i]);
+      if (attribute.isCollection()) {
+        return false;
+      }
+      if (i < parts.length - 1) {
+        if (!(((SingularAttribute<?, ?>) attribute).getType() instanceof ManagedType<?> next)) {
+          return false;
+        }
+        type = next;
+      }
+    }
+    return true;
+  }
+
+  public static <T> TypedQuery<Tuple> createQuery(
+      EntityManager em, Class<T> clazz, Specification<T> spec, Sort sort, List<String> paths) {
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<Tuple> query = cb.createTupleQuery();
+    Root<T> root = query.from(clazz);
+    if (spec != null) {
+      Predicate predicate = spec.toPredicate(root, query, cb);
+      if (predicate != null) {
+        query.where(predicate);
+      }
+    }
+    query.multiselect(
+        paths.stream()
+            .<Selection<?>>map(path -> JpaUtils.makePathResolver(path).apply(root))
+            .toList());
+    if (sort != null && sort.isSorted()) {
+      query.orderBy(QueryUtils.toOrders(sort, root, cb));
+    }
+    return em.createQuery(query);
+  }
+
+  public static Map<String, Object> asMap(List<String> paths, Tuple tuple) {
+    Map<String, Object> row = new LinkedHashMap<>();
+    for (int i = 0; i < paths.size(); i++) {
+      row.put(paths.get(i), tuple.get(i));
+    }
+    return Collections.unmodifiableMap(row);
+  }
+}
@@ -1,11 +1,13 @@
 package aaa.utils.spring.integration.jpa;
 
 import static aaa.nvl.Nvl.nvl;
+import static java.util.Arrays.asList;
 import static java.util.Optional.ofNullable;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
 import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
 import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 import static org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 
 import aaa.utils.spring.integration.jpa.JpaUtils.EntityGraphBuilder;
@@ -15,7 +17,10 @@ import jakarta.persistence.FlushModeType;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.Query;
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -27,6 +32,7 @@ import lombok.With;
 import lombok.experimental.WithBy;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.CacheMode;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -56,6 +62,44 @@ public class QueryParams<T> {
 
   @With LockModeType lockMode;
 
+  @With KeysetScrollPosition keyset;
+
+  @With Integer fetchSize;
+
+  /**
+   * Streamed rows are detached after every {@code clearEvery} of them, 0 - never. Other entities
+   * of the persistence context are kept; with {@link #noFlush} changes of the rows are dropped.
+   */
+  @With Integer clearEvery;
+
+  @With CountStrategy countStrategy;
+  @With Duration countCacheTtl;
+
+  /** Count query runs concurrently with the page query on a separate connection */
+  @With boolean parallelCount;
+
+  @With Integer batchSize;
+  @With boolean parallelBatches;
+
+  /**
+   * Reads run on a replica when {@link ReadReplicas} are enabled and entities come back detached,
+   * lazy associations have to be listed in load or select graphs
+   */
+  @With boolean readReplica;
+
+  /** Replica is used only while its lag is known and within this bound */
+  @With Duration maxStaleness;
+
+  /**
+   * Results are served from {@link QueryResultCache} as detached copies, a miss is loaded on the
+   * caller's session and cached as a copy. Ignored when {@link #lockMode} is set, inside read-write
+   * transactions and without {@link #resultCacheKey()}.
+   */
+  @With boolean resultCache;
+
+  /** Identifies the filter for caches, defaults to the fingerprint of {@link #spec} */
+  @With Object cacheKey;
+
   public static <ID extends Serializable & Comparable<ID>, T extends IAbstractPOJO<ID>>
       QueryParams<T> forId(ID id) {
     return QueryParams.forFilter(IdFilter.forId(id));
@@ -86,8 +130,12 @@ public class QueryParams<T> {
     return withPageable(PageRequest.of(0, count, sort));
   }
 
+  public QueryParams<T> afterKeyset(String continuationToken) {
+    return withKeyset(KeysetCursor.decode(continuationToken));
+  }
+
   public QueryParams<T> withExtraSpec(Specification<T> extraSpec) {
-    return withSpec(spec == null ? extraSpec : Specification.allOf(spec, extraSpec));
+    return withSpec(spec == null ? extraSpec : Fingerprints.allOf(spec, extraSpec));
   }
 
   public QueryParams<T> withLoadEntityGraph(EntityGraph entityGraph) {
@@ -126,6 +174,85 @@ public class QueryParams<T> {
     return withNoFlush(true);
   }
 
+  public QueryParams<T> fromReplica(Duration maxStaleness) {
+    return toBuilder().readReplica(true).maxStaleness(maxStaleness).build();
+  }
+
+  public QueryParams<T> withCachedCount(Duration ttl) {
+    return toBuilder().countStrategy(CountStrategy.CACHED).countCacheTtl(ttl).build();
+  }
+
+  /** See {@link CountStrategy#NEXT_PAGE_ONLY}, pages know only whether there is a next one */
+  public QueryParams<T> withNextPageOnly() {
+    return withCountStrategy(CountStrategy.NEXT_PAGE_ONLY);
+  }
+
+  public Object extractCacheKey() {
+    return ofNullable(cacheKey)
+        .or(() -> ofNullable(spec).flatMap(Fingerprints::fingerprint))
+        .orElse(spec);
+  }
+
+  /**
+   * Everything that shapes results, empty when the spec or the entity graph has no canonical form
+   */
+  public Optional<String> fingerprint() {
+    if (entityGraph != null) {
+      return Optional.empty();
+    }
+    return Fingerprints.fingerprint(
+        asList(
+            spec,
+            pageable,
+            keyset,
+            countStrategy,
+            countCacheTtl,
+            readReplica,
+            maxStaleness,
+            entityGraphType,
+            entityGraphName,
+            load.paths.stream().sorted().toList(),
+            select.paths.stream().sorted().toList(),
+            lockMode));
+  }
+
+  public QueryParams<T> withResultCache() {
+    return withResultCache(true);
+  }
+
+  /**
+   * Everything that shapes query results, keyed by {@link #extractCacheKey()} for the filter. Empty
+   * when only identities are known: of a spec without cacheKey or fingerprint, of an entity graph
+   */
+  public Optional<List<Object>> resultCacheKey() {
+    Object filterKey = extractCacheKey();
+    if (entityGraph != null || (spec != null && filterKey == spec)) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        asList(
+            filterKey,
+            pageable,
+            keyset,
+            countStrategy,
+            countCacheTtl,
+            readReplica,
+            maxStaleness,
+            entityGraphType,
+            entityGraphName,
+            load.paths.stream().sorted().toList(),
+            select.paths.stream().sorted().toList()));
+  }
+
+  public QueryParams<T> forScalarQuery() {
+    return toBuilder()
+        .entityGraph(null)
+        .entityGraphName(null)
+        .load(EntityGraphBuilder.builder())
+        .lockMode(null)
+        .build();
+  }
+
   public QueryParams<T> forUpdate() {
     return withLockMode(LockModeType.PESSIMISTIC_WRITE);
   }
@@ -152,6 +279,9 @@ public class QueryParams<T> {
     if (noFlush) {
       query.setFlushMode(FlushModeType.COMMIT);
     }
+    if (fetchSize != null) {
+      query.setHint(HINT_FETCH_SIZE, fetchSize);
+    }
     if (getLockMode() != null) {
       query.setLockMode(getLockMode());
     }
@@ -0,0 +1,154 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.apache.commons.lang3.StringUtils.split;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import lombok.experimental.UtilityClass;
+import org.hibernate.SessionFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Query results shared between sessions of a factory, LRU-bounded. Entries depend on the queried
+ * entity and the entities of its load and select graphs, and turn stale on committed changes of
+ * any of them. Entities joined only by specs are not tracked. A loaded result goes to its loader
+ * and a copy of it to the cache, hits get copies made by the given copier, so cached values are
+ * never handed out.
+ */
+@UtilityClass
+public class QueryResultCache {
+
+  public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+  static final Map<SessionFactory, Cache<Object, Entry>> caches =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  static final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+  static {
+    EntityChangeNotifier.addListener(change -> invalidate(change.entityClass()));
+  }
+
+  record Entry(Object value, Set<Class<?>> dependencies, long generation) {}
+
+  /** Bounds the results cached for the factory, has to precede its first cached query */
+  public static void configure(SessionFactory sessionFactory, int maximumSize) {
+    if (caches.putIfAbsent(sessionFactory, makeCache(sessionFactory, maximumSize)) != null) {
+      throw new IllegalStateException("Result cache of the session factory is already in use");
+    }
+  }
+
+  static Cache<Object, Entry> makeCache(SessionFactory sessionFactory, int maximumSize) {
+    EntityChangeNotifier.register(sessionFactory);
+    return CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  static Cache<Object, Entry> cacheOf(SessionFactory sessionFactory) {
+    return caches.computeIfAbsent(
+        sessionFactory, factory -> makeCache(factory, DEFAULT_MAXIMUM_SIZE));
+  }
+
+  public static <R> R get(
+      SessionFactory sessionFactory,
+      Object key,
+      Set<Class<?>> dependencies,
+      Supplier<R> loader,
+      UnaryOperator<R> copier) {
+    Cache<Object, Entry> cache = cacheOf(sessionFactory);
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && entry.generation() == generation(entry.dependencies())) {
+      return copier.apply((R) entry.value());
+    }
+    long generation = generation(dependencies);
+    R value = loader.get();
+    cache.put(key, new Entry(copier.apply(value), dependencies, generation));
+    return value;
+  }
+
+  /** Makes stale all results depending on {@code entityClass} or its subclasses */
+  public static void invalidate(Class<?> entityClass) {
+    for (Class<?> clazz = entityClass; clazz != null; clazz = clazz.getSuperclass()) {
+      generations.computeIfAbsent(clazz, key -> new AtomicLong()).incrementAndGet();
+    }
+  }
+
+  /** For bulk statements, again after commit so results read meanwhile do not survive it */
+  public static void invalidateOnCommit(Class<?> entityClass) {
+    invalidate(entityClass);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              invalidate(entityClass);
+            }
+          });
+    }
+  }
+
+  public static void invalidateAll() {
+    synchronized (caches) {
+      caches.values().forEach(Cache::invalidateAll);
+    }
+  }
+
+  /**
+   * Changes of {@code entityClass} so far, for caches of their own. Registers the change listeners
+   * of the factory, so that committed entity changes are counted without a result cache as well.
+   */
+  public static long generation(SessionFactory sessionFactory, Class<?> entityClass) {
+    EntityChangeNotifier.register(sessionFactory);
+    return generation(Set.of(entityClass));
+  }
+
+  static long generation(Set<Class<?>> dependencies) {
+    long generation = 0;
+    for (Class<?> dependency : dependencies) {
+      AtomicLong counter = generations.get(dependency);
+      generation += counter == null ? 0 : counter.get();
+    }
+    return generation;
+  }
+
+  /** {@code clazz} and the entities reached by {@code paths} */
+  public static Set<Class<?>> dependencies(
+      Metamodel metamodel, Class<?> clazz, Collection<String> paths) {
+    Set<Class<?>> dependencies = new HashSet<>();
+    dependencies.add(clazz);
+    for (String path : paths) {
+      ManagedType<?> managedType = metamodel.managedType(clazz);
+      for (String attributeName : split(path, '.')) {
+        Attribute<?, ?> attribute = managedType.getAttribute(attributeName);
+        Type<?> type =
+            attribute instanceof PluralAttribute<?, ?, ?> plural
+                ? plural.getElementType()
+                : ((SingularAttribute<?, ?>) attribute).getType();
+        if (type instanceof EntityType<?>) {
+          dependencies.add(type.getJavaType());
+        }
+        if (!(type instanceof ManagedType<?> nested)) {
+          break;
+        }
+        managedType = nested;
+      }
+    }
+    return dependencies;
+  }
+}
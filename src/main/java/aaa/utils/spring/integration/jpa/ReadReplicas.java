@@ -0,0 +1,110 @@
+package aaa.utils.spring.integration.jpa;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Routes reads to a replica: work runs on a separate read-only EntityManager while
+ * {@link ReplicaRoutingDataSource} hands out replica connections to the current thread. Factories
+ * without a routing data source always read from the primary.
+ */
+@Slf4j
+@UtilityClass
+public class ReadReplicas {
+
+  static final ThreadLocal<Boolean> onReplica = ThreadLocal.withInitial(() -> false);
+  static final Map<EntityManagerFactory, Optional<ReplicaRoutingDataSource>> routingDataSources =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  public static boolean isOnReplica() {
+    return onReplica.get();
+  }
+
+  static Optional<ReplicaRoutingDataSource> routingDataSource(EntityManagerFactory factory) {
+    return routingDataSources.computeIfAbsent(factory, ReadReplicas::findRoutingDataSource);
+  }
+
+  static Optional<ReplicaRoutingDataSource> findRoutingDataSource(EntityManagerFactory factory) {
+    try {
+      return ParallelQueries.dataSource(factory).flatMap(ReadReplicas::unwrapRoutingDataSource);
+    } catch (RuntimeException e) {
+      log.warn("Не удалось определить источник данных для чтения с реплики", e);
+      return Optional.empty();
+    }
+  }
+
+  static Optional<ReplicaRoutingDataSource> unwrapRoutingDataSource(DataSource dataSource) {
+    try {
+      return dataSource.isWrapperFor(ReplicaRoutingDataSource.class)
+          ? Optional.of(dataSource.unwrap(ReplicaRoutingDataSource.class))
+          : Optional.empty();
+    } catch (SQLException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** Without {@code maxStaleness} any lag is accepted, otherwise it has to be known and within */
+  public static boolean canServe(EntityManagerFactory factory, Duration maxStaleness) {
+    if (isOnReplica()) {
+      return false;
+    }
+    Optional<ReplicaRoutingDataSource> routing =
+        routingDataSource(factory).filter(ReplicaRoutingDataSource::isEnabled);
+    if (routing.isEmpty()) {
+      return false;
+    }
+    if (maxStaleness == null) {
+      return true;
+    }
+    try {
+      Duration lag = routing.get().getLagSupplier().get();
+      return lag != null && lag.compareTo(maxStaleness) <= 0;
+    } catch (RuntimeException e) {
+      log.warn("Не удалось определить отставание реплики", e);
+      return false;
+    }
+  }
+
+  /** Runs {@code replicaWork} on a replica, {@code primaryWork} when it is unfit or fails */
+  public static <R> R read(
+      EntityManagerFactory factory,
+      Duration maxStaleness,
+      Function<EntityManager, R> replicaWork,
+      Supplier<R> primaryWork) {
+    if (!canServe(factory, maxStaleness)) {
+      return primaryWork.get();
+    }
+    try {
+      return routed(true, () -> ParallelQueries.readOnly(factory, replicaWork));
+    } catch (RuntimeException e) {
+      log.warn("Ошибка чтения с реплики, запрос повторяется на основной базе", e);
+      return primaryWork.get();
+    }
+  }
+
+  /** Runs work with the routing decided by the caller, e.g. one made on another thread */
+  public static <R> R routed(boolean replica, Supplier<R> work) {
+    boolean enclosing = isOnReplica();
+    onReplica.set(replica);
+    try {
+      return work.get();
+    } finally {
+      if (enclosing) {
+        onReplica.set(true);
+      } else {
+        onReplica.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package aaa.utils.spring.integration.jpa;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Primary connections by default, replica ones inside {@link ReadReplicas#read}. Replica reads are
+ * enabled for the entity manager factories built on this data source.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+  static final String REPLICA = "replica";
+
+  volatile boolean enabled = true;
+  volatile Supplier<Duration> lagSupplier = () -> null;
+
+  public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+    setDefaultTargetDataSource(primary);
+    setTargetDataSources(Map.of(REPLICA, replica));
+  }
+
+  /** Switches replica reads off and on, e.g. during replica maintenance */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Current replication lag, {@code null} when unknown */
+  public void setLagSupplier(Supplier<Duration> lagSupplier) {
+    this.lagSupplier = lagSupplier;
+  }
+
+  public Supplier<Duration> getLagSupplier() {
+    return lagSupplier;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return ReadReplicas.isOnReplica() ? REPLICA : null;
+  }
+}
@@ -1,13 +1,21 @@
 package aaa.utils.spring.integration.jpa;
 
+import jakarta.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 import lombok.NonNull;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @NoRepositoryBean
 public interface RepositoryWithEntityGraph<T, ID extends Serializable>
@@ -19,16 +27,58 @@ public interface RepositoryWithEntityGraph<T, ID extends Serializable>
 
   Page<T> findAll(QueryParams<T> params);
 
+  Window<T> findWindow(QueryParams<T> params);
+
+  /**
+   * Id and select paths of matching rows, read with one tuple query, as unmodifiable maps keyed by
+   * path, without loading entities
+   */
+  Page<Map<String, Object>> findProjection(QueryParams<T> params);
+
   default List<T> findAllUnpaged(QueryParams<T> params) {
     return findAll(params).getContent();
   }
 
+  /**
+   * Entities in the order of {@code ids}, loaded in padded batches of QueryParams.batchSize. With
+   * parallelBatches all of them are detached, otherwise they are managed by the current session
+   */
+  List<T> findAllByIds(Collection<ID> ids, QueryParams<T> params);
+
+  default List<T> findAllByIds(Collection<ID> ids) {
+    return findAllByIds(ids, QueryParams.build());
+  }
+
+  /**
+   * Rows are read through a server-side cursor, so the stream must be consumed and closed inside
+   * a transaction
+   */
+  Stream<T> streamAll(QueryParams<T> params);
+
   long count(QueryParams<T> params);
 
   default long delete(QueryParams<T> params) {
     return delete(params.getSpec());
   }
 
+  /**
+   * Deletes rows matching the spec by chunks of QueryParams.batchSize ids, each chunk committed in
+   * its own new transaction, so a failure keeps the chunks deleted before it. Optional {@code
+   * progress} receives the total deleted so far after every chunk, optional {@code pause} is slept
+   * between chunks.
+   */
+  long deleteInChunks(
+      QueryParams<T> params,
+      PlatformTransactionManager transactionManager,
+      Duration pause,
+      LongConsumer progress);
+
+  /**
+   * Bulk update of all rows matching the spec, bypasses the persistence context and evicts the
+   * entity cache region
+   */
+  long update(QueryParams<T> params, Map<SingularAttribute<T, ?>, Object> values);
+
   default boolean exists(@NonNull QueryParams<T> params) {
     return exists(params.getSpec());
   }
@@ -1,17 +1,24 @@
 package aaa.utils.spring.integration.jpa;
 
+import static aaa.nvl.Nvl.nvl;
+import static java.util.Arrays.asList;
 import static java.util.Optional.ofNullable;
 import static java.util.function.Function.identity;
 
 import aaa.utils.spring.integration.jpa.JpaUtils.EntityGraphBuilder.PseudoSubgraph;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.hypersistence.utils.spring.repository.BaseJpaRepositoryImpl;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CommonAbstractCriteria;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaDelete;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
 import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.ParameterExpression;
 import jakarta.persistence.criteria.Predicate;
@@ -19,45 +26,217 @@ import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Selection;
 import jakarta.persistence.criteria.Subquery;
 import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.apache.commons.lang3.SerializationUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @NoRepositoryBean
 public class RepositoryWithEntityGraphImpl<T, ID extends Serializable>
     extends BaseJpaRepositoryImpl<T, ID> implements RepositoryWithEntityGraph<T, ID> {
 
   private EntityManager em;
+  private JpaEntityInformation<T, ID> entityInformation;
 
   public RepositoryWithEntityGraphImpl(
       JpaEntityInformation<T, ID> entityInformation, EntityManager em) {
     super(entityInformation, em);
     this.em = em;
+    this.entityInformation = entityInformation;
+  }
+
+  RepositoryWithEntityGraphImpl(RepositoryWithEntityGraphImpl<T, ID> primary, EntityManager em) {
+    this(primary.entityInformation, em);
+    this.countCache = primary.countCache;
+  }
+
+  public static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+  public static final int DEFAULT_ID_BATCH_SIZE = 512;
+  public static final Duration DEFAULT_COUNT_CACHE_TTL = Duration.ofMinutes(1);
+
+  private Cache<Optional<Object>, CachedCount<Long>> countCache =
+      CacheBuilder.newBuilder().maximumSize(1000).build();
+
+  private volatile RepositoryWithEntityGraphImpl<T, ID> readOnlyRepository;
+
+  /** Shares caches with this one, runs on the session of the enclosing ParallelQueries.readOnly */
+  private RepositoryWithEntityGraphImpl<T, ID> readOnlyRepository() {
+    if (readOnlyRepository == null) {
+      readOnlyRepository =
+          new RepositoryWithEntityGraphImpl<>(
+              this, ParallelQueries.currentReadOnly(em.getEntityManagerFactory()));
+    }
+    return readOnlyRepository;
+  }
+
+  private <R> R onReplica(
+      QueryParams<T> params,
+      BiFunction<RepositoryWithEntityGraphImpl<T, ID>, QueryParams<T>, R> query) {
+    QueryParams<T> routed = params.withReadReplica(false);
+    if (params.getLockMode() != null) {
+      return query.apply(this, routed);
+    }
+    return ReadReplicas.read(
+        em.getEntityManagerFactory(),
+        params.getMaxStaleness(),
+        ignored -> query.apply(readOnlyRepository(), routed),
+        () -> query.apply(this, routed));
+  }
+
+  private <R> R cachedResult(
+      String operation,
+      QueryParams<T> params,
+      BiFunction<RepositoryWithEntityGraphImpl<T, ID>, QueryParams<T>, R> query) {
+    Optional<List<Object>> key = params.resultCacheKey();
+    QueryParams<T> uncached = params.withResultCache(false);
+    // a read-write transaction could share its uncommitted rows
+    if (params.getLockMode() != null || key.isEmpty() || inReadWriteTransaction()) {
+      return query.apply(this, uncached);
+    }
+    return QueryResultCache.get(
+        em.getEntityManagerFactory().unwrap(SessionFactory.class),
+        asList(getDomainClass(), operation, key.get()),
+        QueryResultCache.dependencies(
+            em.getMetamodel(),
+            getDomainClass(),
+            Stream.concat(params.load.paths.stream(), params.select.paths.stream()).toList()),
+        () -> query.apply(this, uncached),
+        RepositoryWithEntityGraphImpl::detachedCopy);
+  }
+
+  static boolean inReadWriteTransaction() {
+    return TransactionSynchronizationManager.isActualTransactionActive()
+        && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+  }
+
+  /**
+   * Only noFlush queries without locks and outside of read-write transactions are coalesced, so
+   * that a shared result never carries writes of another transaction
+   */
+  static Optional<Object> coalescingKey(
+      Class<?> domainClass, String operation, QueryParams<?> params) {
+    return SingleFlight.isEnabled()
+            && params.isNoFlush()
+            && params.getLockMode() == null
+            && !inReadWriteTransaction()
+        ? params
+            .fingerprint()
+            .<Object>map(fingerprint -> asList(domainClass, operation, fingerprint))
+            .filter(key -> !SingleFlight.isLeading(key))
+        : Optional.empty();
+  }
+
+  /** The leader runs on the caller's session, followers get detached copies of its result */
+  private <R> R coalesced(
+      Object key,
+      QueryParams<T> params,
+      BiFunction<RepositoryWithEntityGraphImpl<T, ID>, QueryParams<T>, R> query) {
+    return SingleFlight.execute(
+        key, () -> query.apply(this, params), RepositoryWithEntityGraphImpl::detachedCopy);
+  }
+
+  /**
+   * Pages and optionals with serialized copies of the entities, so callers sharing a result don't
+   * share mutable state, entities of one result are copied together and keep references between
+   */
+  static <R> R detachedCopy(R result) {
+    if (result instanceof Page<?> page) {
+      Iterator<?> copies = serializedCopy(new ArrayList<>(page.getContent())).iterator();
+      return (R) page.map(ignored -> copies.next());
+    }
+    if (result instanceof Optional<?> optional) {
+      return (R) optional.map(RepositoryWithEntityGraphImpl::serializedCopy);
+    }
+    return result;
+  }
+
+  static <V> V serializedCopy(V value) {
+    if (!(value instanceof Serializable serializable)) {
+      throw new IllegalStateException(
+          "Shared results have to be Serializable to be copied: " + value.getClass().getName());
+    }
+    return (V) SerializationUtils.clone(serializable);
   }
 
   private Function<? super T, ? extends T> selectMapper(QueryParams<T> params) {
-    return params.select.paths.isEmpty()
-        ? identity()
-        : value ->
-            JpaUtils.selectSubgraph(
-                value, PseudoSubgraph.of(params.select.build(em, getDomainClass())));
+    if (params.select.paths.isEmpty()) {
+      return identity();
+    }
+    PseudoSubgraph<T> subgraph = PseudoSubgraph.of(params.select.build(em, getDomainClass()));
+    return value -> JpaUtils.selectSubgraph(value, subgraph);
+  }
+
+  private UnaryOperator<List<T>> selectAllMapper(QueryParams<T> params) {
+    if (params.select.paths.isEmpty()) {
+      return UnaryOperator.identity();
+    }
+    PseudoSubgraph<T> subgraph = PseudoSubgraph.of(params.select.build(em, getDomainClass()));
+    return values -> JpaUtils.selectSubgraph(values, subgraph);
+  }
+
+  private Sort sortOf(QueryParams<T> params) {
+    return ofNullable(params.getPageable())
+        .map(Pageable::getSort)
+        .map(RepositoryWithEntityGraphImpl::withIdTiebreaker)
+        .orElseGet(Sort::unsorted);
   }
 
   @Override
   public Optional<T> findOne(QueryParams<T> params) {
+    if (params.isResultCache()) {
+      return cachedResult(
+          "findOne", params, (repository, uncached) -> repository.findOne(uncached));
+    }
+    Optional<Object> coalescingKey = coalescingKey(getDomainClass(), "findOne", params);
+    if (coalescingKey.isPresent()) {
+      return coalesced(
+          coalescingKey.get(), params, (repository, routed) -> repository.findOne(routed));
+    }
+    if (params.isReadReplica()) {
+      return onReplica(params, (replica, routed) -> replica.findOne(routed));
+    }
     try {
       return Optional.of(
               applyQueryParams(
@@ -77,6 +256,9 @@ public class RepositoryWithEntityGraphImpl<T, ID extends Serializable>
 
   @Override
   public Optional<T> findAny(QueryParams<T> params) {
+    if (params.isReadReplica()) {
+      return onReplica(params, (replica, routed) -> replica.findAny(routed));
+    }
     try {
       return applyQueryParams(
               params,
@@ -96,34 +278,285 @@ public class RepositoryWithEntityGraphImpl<T, ID extends Serializable>
 
   @Override
   public Page<T> findAll(@NonNull QueryParams<T> params) {
-    return readPage(
-            applyQueryParams(
-                params,
-                getQuery(
-                    params.getSpec(),
-                    ofNullable(params.getPageable())
-                        .map(Pageable::getSort)
-                        .map(
-                            sort -> {
-                              if (sort == null || sort.isUnsorted()) {
-                                return sort;
-                              }
-                              Optional<Order> last = sort.stream().reduce((v1, v2) -> v2);
-                              return last.map(Order::getProperty).equals(Optional.of("id"))
-                                  ? sort
-                                  : sort.and(
-                                      Sort.by(
-                                          last.map(Order::getDirection).orElse(Direction.DESC),
-                                          "id"));
-                            })
-                        .orElseGet(Sort::unsorted))),
-            getDomainClass(),
-            ofNullable(params.getPageable()).orElseGet(Pageable::unpaged),
-            params.getSpec())
-        .map(selectMapper(params));
+    if (params.isResultCache()) {
+      return cachedResult(
+          "findAll", params, (repository, uncached) -> repository.findAll(uncached));
+    }
+    Optional<Object> coalescingKey = coalescingKey(getDomainClass(), "findAll", params);
+    if (coalescingKey.isPresent()) {
+      return coalesced(
+          coalescingKey.get(), params, (repository, routed) -> repository.findAll(routed));
+    }
+    if (params.isReadReplica()) {
+      return onReplica(params, (replica, routed) -> replica.findAll(routed));
+    }
+    Pageable pageable = ofNullable(params.getPageable()).orElseGet(Pageable::unpaged);
+    CountStrategy countStrategy = nvl(params.getCountStrategy(), CountStrategy.EXACT);
+    boolean nextPageOnly = countStrategy == CountStrategy.NEXT_PAGE_ONLY;
+    Optional<CompletableFuture<Long>> parallelTotal =
+        params.isParallelCount() && !nextPageOnly && pageable.isPaged()
+            ? countInParallel(params.forScalarQuery(), countStrategy)
+            : Optional.empty();
+    List<T> content =
+        findContent(
+            params,
+            query -> {
+              if (pageable.isPaged()) {
+                query.setFirstResult(Math.toIntExact(pageable.getOffset()));
+                query.setMaxResults(pageable.getPageSize() + (nextPageOnly ? 1 : 0));
+              }
+            });
+    long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+    boolean countQueried =
+        !nextPageOnly
+            && pageable.isPaged()
+            && (content.size() >= pageable.getPageSize() || (content.isEmpty() && offset > 0));
+    if (!countQueried) {
+      parallelTotal.ifPresent(future -> future.cancel(false));
+    }
+    long total;
+    if (countQueried) {
+      total =
+          parallelTotal
+              .map(ParallelQueries::await)
+              .orElseGet(() -> count(params.forScalarQuery(), countStrategy));
+    } else if (nextPageOnly && pageable.isPaged() && content.size() > pageable.getPageSize()) {
+      content = content.subList(0, pageable.getPageSize());
+      // not an estimate, just enough for hasNext()
+      total = offset + content.size() + 1;
+    } else {
+      total = offset + content.size();
+    }
+    return new CountedPage<>(content, pageable, total, countStrategy, countQueried);
+  }
+
+  protected List<T> findContent(QueryParams<T> params, Consumer<TypedQuery<?>> limits) {
+    TypedQuery<T> query = applyQueryParams(params, getQuery(params.getSpec(), sortOf(params)));
+    limits.accept(query);
+    return selectAllMapper(params).apply(query.getResultList());
+  }
+
+  @Override
+  public Page<Map<String, Object>> findProjection(@NonNull QueryParams<T> params) {
+    List<String> paths =
+        Projections.projectionPaths(
+            entityInformation.getIdAttribute().getName(), params.select.asPaths());
+    if (!Projections.isProjectable(em.getMetamodel(), getDomainClass(), paths)) {
+      throw new IllegalArgumentException("Paths through collections can't be projected: " + paths);
+    }
+    Pageable pageable = ofNullable(params.getPageable()).orElseGet(Pageable::unpaged);
+    TypedQuery<Tuple> query =
+        params
+            .forScalarQuery()
+            .applyToQuery(
+                Projections.createQuery(
+                    em, getDomainClass(), params.getSpec(), sortOf(params), paths),
+                em,
+                getDomainClass());
+    if (pageable.isPaged()) {
+      query.setFirstResult(Math.toIntExact(pageable.getOffset()));
+      query.setMaxResults(pageable.getPageSize());
+    }
+    return PageableExecutionUtils.getPage(
+        query.getResultList().stream().map(tuple -> Projections.asMap(paths, tuple)).toList(),
+        pageable,
+        () -> count(params.forScalarQuery()));
+  }
+
+  @Override
+  public Window<T> findWindow(@NonNull QueryParams<T> params) {
+    if (params.isReadReplica()) {
+      return onReplica(params, (replica, routed) -> replica.findWindow(routed));
+    }
+    Pageable pageable = ofNullable(params.getPageable()).orElseGet(Pageable::unpaged);
+    Sort sort =
+        pageable.getSort().isSorted()
+            ? withIdTiebreaker(pageable.getSort())
+            : Sort.by(Direction.ASC, "id");
+    KeysetScrollPosition position =
+        ofNullable(params.getKeyset()).orElseGet(ScrollPosition::keyset);
+    TypedQuery<T> query =
+        applyQueryParams(
+            params,
+            getQuery(
+                params
+                    .withExtraSpec(
+                        (root, cq, cb) -> KeysetCursor.toPredicate(position, sort, root, cb))
+                    .getSpec(),
+                sort));
+    if (pageable.isPaged()) {
+      query.setMaxResults(pageable.getPageSize() + 1);
+    }
+    List<T> content = query.getResultList();
+    boolean hasNext = pageable.isPaged() && content.size() > pageable.getPageSize();
+    List<T> window = hasNext ? content.subList(0, pageable.getPageSize()) : content;
+    List<KeysetScrollPosition> positions =
+        window.stream().map(value -> KeysetCursor.positionOf(value, sort)).toList();
+    return Window.from(selectAllMapper(params).apply(window), positions::get, hasNext);
+  }
+
+  @Override
+  public List<T> findAllByIds(@NonNull Collection<ID> ids, @NonNull QueryParams<T> params) {
+    List<ID> requested = ids.stream().filter(Objects::nonNull).distinct().toList();
+    Map<Object, T> found = new HashMap<>();
+    UnaryOperator<List<T>> mapper = selectAllMapper(params);
+    // parallel batches are loaded detached, so the persistence context is not consulted
+    if (params.getSpec() == null && !params.isParallelBatches()) {
+      requested.forEach(id -> findManaged(id).ifPresent(value -> found.put(id, value)));
+      mapper.apply(List.copyOf(found.values()));
+    }
+    Function<List<ID>, List<T>> inline =
+        params.isParallelBatches()
+            ? batch -> serializedCopy(new ArrayList<>(findBatch(em, batch, params, mapper)))
+            : batch -> findBatch(em, batch, params, mapper);
+    List<CompletableFuture<List<T>>> batches =
+        DaoUtils.paddedBatches(
+                requested.stream().filter(id -> !found.containsKey(id)).toList(),
+                nvl(params.getBatchSize(), DEFAULT_ID_BATCH_SIZE))
+            .stream()
+            .map(
+                batch ->
+                    (params.isParallelBatches()
+                            ? ParallelQueries.trySubmit(
+                                em.getEntityManagerFactory(),
+                                readOnlyEm -> findBatch(readOnlyEm, batch, params, mapper))
+                            : Optional.<CompletableFuture<List<T>>>empty())
+                        .orElseGet(() -> CompletableFuture.completedFuture(inline.apply(batch))))
+            .toList();
+    batches.stream()
+        .flatMap(batch -> ParallelQueries.await(batch).stream())
+        .forEach(value -> found.putIfAbsent(entityInformation.getId(value), value));
+    return requested.stream().map(found::get).filter(Objects::nonNull).toList();
+  }
+
+  protected List<T> findBatch(
+      EntityManager entityManager,
+      List<ID> batch,
+      QueryParams<T> params,
+      UnaryOperator<List<T>> mapper) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<T> query = cb.createQuery(getDomainClass());
+    Root<T> root = query.from(getDomainClass());
+    query
+        .select(root)
+        .where(
+            params
+                .withExtraSpec(
+                    (r, q, b) -> r.get(entityInformation.getIdAttribute().getName()).in(batch))
+                .getSpec()
+                .toPredicate(root, query, cb));
+    return mapper.apply(
+        params
+            .applyToQuery(entityManager.createQuery(query), entityManager, getDomainClass())
+            .getResultList());
+  }
+
+  protected Optional<T> findManaged(ID id) {
+    SessionImplementor session = em.unwrap(SessionImplementor.class);
+    EntityPersister persister =
+        session.getFactory().getMappingMetamodel().getEntityDescriptor(getDomainClass());
+    return ofNullable(
+            session
+                .getPersistenceContextInternal()
+                .getEntity(session.generateEntityKey(id, persister)))
+        .map(getDomainClass()::cast);
+  }
+
+  @Override
+  public Stream<T> streamAll(@NonNull QueryParams<T> params) {
+    int fetchSize = nvl(params.getFetchSize(), DEFAULT_STREAM_FETCH_SIZE);
+    int clearEvery = nvl(params.getClearEvery(), fetchSize);
+    Function<? super T, ? extends T> mapper = selectMapper(params);
+    Stream<T> rows =
+        applyQueryParams(
+                params.withFetchSize(fetchSize), getQuery(params.getSpec(), sortOf(params)))
+            .getResultStream();
+    Iterator<T> iterator = rows.iterator();
+    return StreamSupport.stream(
+            new AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+              final List<T> loaded = new ArrayList<>();
+
+              @Override
+              public boolean tryAdvance(Consumer<? super T> action) {
+                if (clearEvery > 0 && loaded.size() >= clearEvery) {
+                  if (!params.isNoFlush()) {
+                    em.flush();
+                  }
+                  loaded.forEach(em::detach);
+                  loaded.clear();
+                }
+                if (!iterator.hasNext()) {
+                  return false;
+                }
+                T row = iterator.next();
+                if (clearEvery > 0) {
+                  loaded.add(row);
+                }
+                action.accept(mapper.apply(row));
+                return true;
+              }
+            },
+            false)
+        .onClose(rows::close);
+  }
+
+  static Sort withIdTiebreaker(Sort sort) {
+    if (sort == null || sort.isUnsorted()) {
+      return sort;
+    }
+    Optional<Order> last = sort.stream().reduce((v1, v2) -> v2);
+    return last.map(Order::getProperty).equals(Optional.of("id"))
+        ? sort
+        : sort.and(Sort.by(last.map(Order::getDirection).orElse(Direction.DESC), "id"));
   }
 
   public long count(@NonNull QueryParams<T> params) {
+    if (params.isResultCache()) {
+      return cachedResult("count", params, (repository, uncached) -> repository.count(uncached));
+    }
+    Optional<Object> coalescingKey = coalescingKey(getDomainClass(), "count", params);
+    if (coalescingKey.isPresent()) {
+      return coalesced(
+          coalescingKey.get(), params, (repository, routed) -> repository.count(routed));
+    }
+    if (params.isReadReplica()) {
+      return onReplica(params, (replica, routed) -> replica.count(routed));
+    }
+    return count(params, nvl(params.getCountStrategy(), CountStrategy.EXACT));
+  }
+
+  protected long count(QueryParams<T> params, CountStrategy countStrategy) {
+    if (countStrategy != CountStrategy.CACHED) {
+      return executeCount(params);
+    }
+    return cachedCount(params)
+        .orElseGet(
+            () -> {
+              long generation = countGeneration();
+              return cacheCount(params, generation, executeCount(params));
+            });
+  }
+
+  protected Optional<CompletableFuture<Long>> countInParallel(
+      QueryParams<T> params, CountStrategy countStrategy) {
+    Optional<Long> cached =
+        countStrategy == CountStrategy.CACHED ? cachedCount(params) : Optional.empty();
+    if (cached.isPresent()) {
+      return cached.map(CompletableFuture::completedFuture);
+    }
+    long generation = countGeneration();
+    return ParallelQueries.trySubmit(
+            em.getEntityManagerFactory(),
+            ReadReplicas.isOnReplica(),
+            readOnlyEm -> executeCount(readOnlyEm, params))
+        .map(
+            future ->
+                countStrategy == CountStrategy.CACHED
+                    ? future.thenApply(count -> cacheCount(params, generation, count))
+                    : future);
+  }
+
+  protected long executeCount(QueryParams<T> params) {
     return applyQueryParams(params, getCountQuery(params.spec, getDomainClass()))
         .getResultList()
         .stream()
@@ -131,6 +564,54 @@ public class RepositoryWithEntityGraphImpl<T, ID extends Serializable>
         .reduce(0L, Long::sum);
   }
 
+  protected long executeCount(EntityManager entityManager, QueryParams<T> params) {
+    return params
+        .applyToQuery(
+            createCountQuery(entityManager, params.getSpec()), entityManager, getDomainClass())
+        .getResultList()
+        .stream()
+        .filter(Objects::nonNull)
+        .reduce(0L, Long::sum);
+  }
+
+  protected TypedQuery<Long> createCountQuery(EntityManager entityManager, Specification<T> spec) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = cb.createQuery(Long.class);
+    Root<T> root = query.from(getDomainClass());
+    if (spec != null) {
+      Predicate predicate = spec.toPredicate(root, query, cb);
+      if (predicate != null) {
+        query.where(predicate);
+      }
+    }
+    query.select(query.isDistinct() ? cb.countDistinct(root) : cb.count(root));
+    query.orderBy(List.of());
+    return entityManager.createQuery(query);
+  }
+
+  Optional<Long> cachedCount(QueryParams<T> params) {
+    Duration ttl = nvl(params.getCountCacheTtl(), DEFAULT_COUNT_CACHE_TTL);
+    return ofNullable(countCache.getIfPresent(ofNullable(params.extractCacheKey())))
+        .filter(cached -> cached.isValid(ttl))
+        .map(CachedCount::count);
+  }
+
+  long countGeneration() {
+    return QueryResultCache.generation(
+        em.getEntityManagerFactory().unwrap(SessionFactory.class), getDomainClass());
+  }
+
+  long cacheCount(QueryParams<T> params, long generation, long count) {
+    countCache.put(
+        ofNullable(params.extractCacheKey()),
+        new CachedCount<>(count, getDomainClass(), generation));
+    return count;
+  }
+
+  public void evictCountCache() {
+    countCache.invalidateAll();
+  }
+
   protected <Q extends Query> Q applyQueryParams(QueryParams<T> params, Q query) {
     return params.applyToQuery(query, em, getDomainClass());
   }
@@ -178,7 +659,117 @@ public class RepositoryWithEntityGraphImpl<T, ID extends Serializable>
       }
     }
 
-    return em.createQuery(delete).executeUpdate();
+    int deleted = em.createQuery(delete).executeUpdate();
+    if (deleted > 0) {
+      evictCountCache();
+      QueryResultCache.invalidateOnCommit(getDomainClass());
+    }
+    return deleted;
+  }
+
+  /** Suspends the caller's (read-only by default) transaction, chunks commit on their own */
+  @Override
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  public long deleteInChunks(
+      QueryParams<T> params,
+      PlatformTransactionManager transactionManager,
+      Duration pause,
+      LongConsumer progress) {
+    int chunkSize = nvl(params.getBatchSize(), DEFAULT_ID_BATCH_SIZE);
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Batch size has to be positive: " + chunkSize);
+    }
+    SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+    TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+    transactions.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    long deleted = 0;
+    try {
+      while (true) {
+        DeletedChunk chunk =
+            transactions.execute(status -> deleteChunk(params, chunkSize, sessionFactory));
+        deleted += chunk.deleted();
+        if (progress != null && chunk.deleted() > 0) {
+          progress.accept(deleted);
+        }
+        if (chunk.selected() < chunkSize) {
+          break;
+        }
+        if (pause != null && !pause.isZero()) {
+          try {
+            Thread.sleep(pause.toMillis());
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+      }
+    } finally {
+      if (deleted > 0) {
+        evictCountCache();
+        QueryResultCache.invalidateOnCommit(getDomainClass());
+      }
+    }
+    return deleted;
+  }
+
+  record DeletedChunk(int selected, int deleted) {}
+
+  DeletedChunk deleteChunk(QueryParams<T> params, int chunkSize, SessionFactory sessionFactory) {
+    String idName = entityInformation.getIdAttribute().getName();
+    CriteriaBuilder builder = em.getCriteriaBuilder();
+    CriteriaQuery<Object> select = builder.createQuery(Object.class);
+    Root<T> from = select.from(getDomainClass());
+    select.select(from.get(idName));
+    ofNullable(params.getSpec())
+        .map(spec -> spec.toPredicate(from, select, builder))
+        .ifPresent(select::where);
+    List<Object> ids = em.createQuery(select).setMaxResults(chunkSize).getResultList();
+    if (ids.isEmpty()) {
+      return new DeletedChunk(0, 0);
+    }
+    CriteriaDelete<T> delete = builder.createCriteriaDelete(getDomainClass());
+    delete.where(delete.from(getDomainClass()).get(idName).in(ids));
+    int deleted = em.createQuery(delete).executeUpdate();
+    DaoUtils.cacheInvalidateIds(sessionFactory, getDomainClass(), ids);
+    return new DeletedChunk(ids.size(), deleted);
+  }
+
+  @Override
+  public long update(QueryParams<T> params, Map<SingularAttribute<T, ?>, Object> values) {
+    if (values.isEmpty()) {
+      return 0;
+    }
+
+    CriteriaBuilder builder = em.getCriteriaBuilder();
+    CriteriaUpdate<T> update = builder.createCriteriaUpdate(getDomainClass());
+    Root<T> root = update.from(getDomainClass());
+    values.forEach((attribute, value) -> update.set(attribute.getName(), value));
+
+    if (params.getSpec() != null) {
+      Predicate predicate =
+          params.getSpec().toPredicate(root, DeleteCriteriaQuery.of(update), builder);
+
+      if (predicate != null) {
+        update.where(predicate);
+      }
+    }
+
+    int updated = em.createQuery(update).executeUpdate();
+    if (updated > 0) {
+      evictEntityData();
+      evictCountCache();
+      QueryResultCache.invalidateOnCommit(getDomainClass());
+    }
+    return updated;
+  }
+
+  void evictEntityData() {
+    SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+    if (IAbstractPOJO.class.isAssignableFrom(getDomainClass())) {
+      DaoUtils.cacheInvalidate(sessionFactory, (Class) getDomainClass(), null);
+    } else {
+      sessionFactory.getCache().evictEntityData(getDomainClass());
+    }
   }
 
   @AllArgsConstructor(staticName = "of")
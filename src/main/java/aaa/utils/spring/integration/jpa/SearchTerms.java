@@ -0,0 +1,125 @@
+package aaa.utils.spring.integration.jpa;
+
+import static aaa.i18n.ru.TransliterateUtils.variateFix;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Subquery;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Search term variants: a single canonical form when a normalizer is set (to match a normalized
+ * column), otherwise the term and its transliteration variants, optionally bounded by limits
+ */
+@Slf4j
+@UtilityClass
+public class SearchTerms {
+
+  public static final int UNLIMITED = Integer.MAX_VALUE;
+
+  static volatile UnaryOperator<String> normalizer;
+  static volatile int maxVariants = UNLIMITED;
+  static volatile int maxPredicates = UNLIMITED;
+  static volatile IntConsumer predicateCountListener = count -> {};
+  static volatile Runnable truncationListener = () -> {};
+
+  static final Cache<String, List<String>> variants =
+      CacheBuilder.newBuilder().maximumSize(10_000).build();
+
+  public static void setNormalizer(UnaryOperator<String> termNormalizer) {
+    normalizer = termNormalizer;
+    variants.invalidateAll();
+  }
+
+  /** Variants per word, unlimited by default */
+  public static void setMaxVariants(int limit) {
+    maxVariants = limit;
+  }
+
+  /**
+   * Variant predicates per search, unlimited by default. Words get fewer variants when exceeded,
+   * but at least one, so such searches may find less than before.
+   */
+  public static void setMaxPredicates(int limit) {
+    maxPredicates = limit;
+  }
+
+  /** Receives count of predicates generated by each search */
+  public static void setPredicateCountListener(IntConsumer listener) {
+    predicateCountListener = listener;
+  }
+
+  /** Notified of each search that got fewer variants than its words have */
+  public static void setTruncationListener(Runnable listener) {
+    truncationListener = listener;
+  }
+
+  @SneakyThrows
+  public static List<String> variants(String term) {
+    if (term == null) {
+      return Arrays.asList(term);
+    }
+    return variants.get(term, () -> computeVariants(term));
+  }
+
+  public static List<String> variants(String term, int limit) {
+    List<String> all = variants(term);
+    if (all.size() <= limit) {
+      return all;
+    }
+    log.debug("Поиск ограничен {} вариантами из {}", limit, all.size());
+    return all.subList(0, Math.max(1, limit));
+  }
+
+  static List<String> computeVariants(String term) {
+    UnaryOperator<String> currentNormalizer = normalizer;
+    if (currentNormalizer != null) {
+      return List.of(currentNormalizer.apply(term));
+    }
+    Set<String> all = new LinkedHashSet<>();
+    all.add(term);
+    variateFix(term).forEach(all::add);
+    return List.copyOf(all);
+  }
+
+  /** Variants allowed per word when searching for {@code words} words */
+  public static int variantsPerWord(int words) {
+    return Math.max(1, Math.min(maxVariants, maxPredicates / Math.max(1, words)));
+  }
+
+  /**
+   * Records a search built for {@code query}. Count queries repeat the predicates of their page
+   * query, so they aren't recorded again.
+   */
+  public static void recordPredicates(CommonAbstractCriteria query, int count, boolean truncated) {
+    if (isCountQuery(query)) {
+      return;
+    }
+    predicateCountListener.accept(count);
+    if (truncated) {
+      truncationListener.run();
+    }
+  }
+
+  static boolean isCountQuery(CommonAbstractCriteria query) {
+    while (query instanceof Subquery<?> subquery) {
+      query = subquery.getContainingQuery();
+    }
+    return query instanceof CriteriaQuery<?> criteria && criteria.getResultType() == Long.class;
+  }
+
+  /** Whether {@code variants} of {@code term} were cut off by a limit */
+  public static boolean isTruncated(String term, List<String> variants) {
+    return variants.size() < variants(term).size();
+  }
+}
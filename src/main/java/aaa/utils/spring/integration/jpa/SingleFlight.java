@@ -0,0 +1,122 @@
+package aaa.utils.spring.integration.jpa;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Identical concurrent queries run once: the first caller loads, callers arriving meanwhile wait
+ * for its result and get their own copies of it. The leader keeps its own result and copies it for
+ * followers before anyone else can touch it. When the leader fails one of its followers takes over,
+ * a follower waiting longer than the timeout runs the query itself.
+ */
+@UtilityClass
+public class SingleFlight {
+
+  public static final Duration DEFAULT_FOLLOWER_TIMEOUT = Duration.ofSeconds(30);
+
+  static final class Flight {
+    final CompletableFuture<Object> shared = new CompletableFuture<>();
+    final AtomicInteger followers = new AtomicInteger();
+  }
+
+  static volatile boolean enabled;
+  static final ConcurrentMap<Object, Flight> inFlight = new ConcurrentHashMap<>();
+  static final ThreadLocal<Set<Object>> leading = new ThreadLocal<>();
+
+  /** Applies to noFlush queries of repositories, off by default */
+  public static void setEnabled(boolean enabled) {
+    SingleFlight.enabled = enabled;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Whether the current thread is loading {@code key} for its followers */
+  public static boolean isLeading(Object key) {
+    Set<Object> keys = leading.get();
+    return keys != null && keys.contains(key);
+  }
+
+  public static <R> R execute(Object key, Supplier<R> loader, UnaryOperator<R> copier) {
+    return execute(key, loader, copier, DEFAULT_FOLLOWER_TIMEOUT);
+  }
+
+  /** {@code loader} is run directly when called again for the same key from within itself */
+  public static <R> R execute(
+      Object key, Supplier<R> loader, UnaryOperator<R> copier, Duration followerTimeout) {
+    if (isLeading(key)) {
+      return loader.get();
+    }
+    long deadline = System.nanoTime() + followerTimeout.toNanos();
+    while (true) {
+      Flight own = new Flight();
+      Flight flight =
+          inFlight.compute(
+              key,
+              (ignored, running) -> {
+                if (running == null) {
+                  return own;
+                }
+                running.followers.incrementAndGet();
+                return running;
+              });
+      if (flight == own) {
+        return lead(key, own, loader, copier);
+      }
+      try {
+        return copier.apply(
+            (R) flight.shared.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+      } catch (ExecutionException | CancellationException e) {
+        // the leader failed, the first follower to get here leads the next attempt
+      } catch (TimeoutException e) {
+        return loader.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for an identical query", e);
+      }
+    }
+  }
+
+  static <R> R lead(Object key, Flight flight, Supplier<R> loader, UnaryOperator<R> copier) {
+    R result;
+    Set<Object> keys = leading.get();
+    if (keys == null) {
+      keys = new HashSet<>();
+      leading.set(keys);
+    }
+    keys.add(key);
+    try {
+      result = loader.get();
+    } catch (Throwable e) {
+      inFlight.remove(key, flight);
+      flight.shared.completeExceptionally(e);
+      throw e;
+    } finally {
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        leading.remove();
+      }
+    }
+    // no followers can join after removal, so the count is final
+    inFlight.remove(key, flight);
+    try {
+      flight.shared.complete(flight.followers.get() > 0 ? copier.apply(result) : null);
+    } catch (RuntimeException e) {
+      flight.shared.completeExceptionally(e);
+    }
+    return result;
+  }
+}
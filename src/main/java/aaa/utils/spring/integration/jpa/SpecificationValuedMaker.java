@@ -14,4 +14,8 @@ public interface SpecificationValuedMaker {
   Specification makeSpecification(Function<Root, Path> field);
 
   boolean isValueProvided();
+
+  default Object getValue() {
+    return null;
+  }
 }
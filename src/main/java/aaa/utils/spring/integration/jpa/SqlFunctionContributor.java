@@ -0,0 +1,42 @@
+package aaa.utils.spring.integration.jpa;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.query.sqm.function.SqmFunctionRegistry;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/** Registered through META-INF/services, functions are only contributed for known dialects */
+public class SqlFunctionContributor implements FunctionContributor {
+
+  /** in_array(column, array) */
+  public static final String IN_ARRAY = "in_array";
+
+  /** fts_match(tsvector, regconfig, term) */
+  public static final String FTS_MATCH = "fts_match";
+
+  /** trgm_match(column, term), word similarity of pg_trgm */
+  public static final String TRGM_MATCH = "trgm_match";
+
+  @Override
+  public void contributeFunctions(FunctionContributions functionContributions) {
+    Dialect dialect = functionContributions.getDialect();
+    SqmFunctionRegistry registry = functionContributions.getFunctionRegistry();
+    BasicType<Boolean> booleanType =
+        functionContributions
+            .getTypeConfiguration()
+            .getBasicTypeRegistry()
+            .resolve(StandardBasicTypes.BOOLEAN);
+    if (dialect instanceof PostgreSQLDialect) {
+      registry.registerPattern(IN_ARRAY, "(?1 = any(?2))", booleanType);
+      registry.registerPattern(
+          FTS_MATCH, "(?1 @@ plainto_tsquery(cast(?2 as regconfig), ?3))", booleanType);
+      registry.registerPattern(TRGM_MATCH, "(?2 <% ?1)", booleanType);
+    } else if (dialect instanceof H2Dialect) {
+      registry.registerPattern(IN_ARRAY, "array_contains(?2, ?1)", booleanType);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package aaa.utils.spring.integration.jpa.template;
+
+import static java.util.Optional.ofNullable;
+
+import aaa.utils.spring.integration.jpa.EntityChangeNotifier;
+import aaa.utils.spring.integration.jpa.EntityChangeNotifier.EntityChange;
+import aaa.utils.spring.integration.jpa.InMemoryEvaluator;
+import aaa.utils.spring.integration.jpa.ParallelQueries;
+import aaa.utils.spring.integration.jpa.QueryParams;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.PersistenceUnitUtil;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
+
+/**
+ * Serves {@link #listDict} from immutable in-memory snapshots loaded once per dictionary class.
+ * Committed changes trigger a background reload which is swapped in when ready, readers keep the
+ * previous snapshot meanwhile. Changes bypassing Hibernate events need {@link #refresh} (e.g.
+ * scheduled). Returned entities are detached and shared, treat them as read-only.
+ */
+@Slf4j
+public class CachedDictRepository extends DictRepository {
+
+  static final Sort ID_ORDER = Sort.by(Order.asc("id"));
+
+  final Map<Class<?>, Snapshot<?>> snapshots = new ConcurrentHashMap<>();
+  final Set<Class<?>> stale = ConcurrentHashMap.newKeySet();
+  final Set<Class<?>> refreshing = ConcurrentHashMap.newKeySet();
+  final Consumer<EntityChange> changeListener = change -> refresh(change.entityClass());
+
+  Executor refreshExecutor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "dict-refresh");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public void setRefreshExecutor(Executor refreshExecutor) {
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  @PostConstruct
+  public void subscribe() {
+    EntityChangeNotifier.register(em.getEntityManagerFactory().unwrap(SessionFactory.class));
+    EntityChangeNotifier.addListener(changeListener);
+  }
+
+  @PreDestroy
+  public void unsubscribe() {
+    EntityChangeNotifier.removeListener(changeListener);
+  }
+
+  static class Snapshot<T> {
+    final List<T> values;
+    final Map<Object, T> byId;
+    final Map<Sort, List<T>> sortedViews = new ConcurrentHashMap<>();
+
+    Snapshot(List<T> values, PersistenceUnitUtil persistenceUnitUtil) {
+      this.values = List.copyOf(values);
+      this.byId =
+          this.values.stream()
+              .collect(
+                  Collectors.toUnmodifiableMap(
+                      persistenceUnitUtil::getIdentifier, Function.identity()));
+    }
+
+    List<T> sorted(Sort sort) {
+      return sort.equals(ID_ORDER)
+          ? values
+          : sortedViews.computeIfAbsent(
+              sort, key -> values.stream().sorted(InMemoryEvaluator.comparator(key)).toList());
+    }
+  }
+
+  /** Query parameters used to load a snapshot, e.g. to fetch associations needed by readers */
+  protected <T> QueryParams<T> loadParams(Class<T> domainClass) {
+    return QueryParams.<T>build().withUnpagedSort(ID_ORDER);
+  }
+
+  protected <T> Snapshot<T> load(Class<T> domainClass) {
+    return ParallelQueries.readOnly(
+        em.getEntityManagerFactory(),
+        readOnlyEm ->
+            new Snapshot<>(
+                listDict(readOnlyEm, domainClass, loadParams(domainClass)),
+                em.getEntityManagerFactory().getPersistenceUnitUtil()));
+  }
+
+  /** Loads outside of the map so a slow query doesn't block other dictionaries */
+  <T> Snapshot<T> snapshot(Class<T> domainClass) {
+    Snapshot<?> snapshot = snapshots.get(domainClass);
+    if (snapshot == null) {
+      Snapshot<T> loaded = load(domainClass);
+      Snapshot<?> concurrent = snapshots.putIfAbsent(domainClass, loaded);
+      snapshot = concurrent != null ? concurrent : loaded;
+    }
+    return (Snapshot<T>) snapshot;
+  }
+
+  @Override
+  public <T> List<T> listDict(Class<T> domainClass, QueryParams<T> params) {
+    List<T> sorted =
+        snapshot(domainClass)
+            .sorted(
+                ofNullable(params.getPageable())
+                    .map(pageable -> pageable.getSortOr(ID_ORDER))
+                    .orElse(ID_ORDER));
+    if (params.getSpec() == null) {
+      return sorted;
+    }
+    try {
+      return sorted.stream()
+          .filter(InMemoryEvaluator.compile(em, domainClass, params.getSpec()))
+          .toList();
+    } catch (UnsupportedOperationException e) {
+      return super.listDict(domainClass, params);
+    }
+  }
+
+  public <T> Optional<T> findById(Class<T> domainClass, Object id) {
+    return ofNullable(snapshot(domainClass).byId.get(id));
+  }
+
+  /** Reloads a cached dictionary in background, readers are served the current snapshot */
+  public void refresh(Class<?> domainClass) {
+    if (snapshots.containsKey(domainClass)) {
+      stale.add(domainClass);
+      scheduleReload(domainClass);
+    }
+  }
+
+  public void refreshAll() {
+    snapshots.keySet().forEach(this::refresh);
+  }
+
+  void scheduleReload(Class<?> domainClass) {
+    if (refreshing.add(domainClass)) {
+      refreshExecutor.execute(() -> reload(domainClass));
+    }
+  }
+
+  void reload(Class<?> domainClass) {
+    try {
+      while (stale.remove(domainClass)) {
+        snapshots.put(domainClass, load(domainClass));
+      }
+    } catch (RuntimeException e) {
+      log.warn("Ошибка при обновлении справочника: " + domainClass.getName(), e);
+    } finally {
+      refreshing.remove(domainClass);
+      if (stale.contains(domainClass)) {
+        scheduleReload(domainClass);
+      }
+    }
+  }
+}
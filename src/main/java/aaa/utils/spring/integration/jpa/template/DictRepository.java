@@ -22,6 +22,10 @@ public class DictRepository {
 
   @Transactional
   public <T> List<T> listDict(Class<T> domainClass, QueryParams<T> params) {
+    return listDict(em, domainClass, params);
+  }
+
+  protected <T> List<T> listDict(EntityManager em, Class<T> domainClass, QueryParams<T> params) {
     CriteriaBuilder cb = em.getCriteriaBuilder();
     CriteriaQuery<T> cq = cb.createQuery(domainClass);
     Root<T> from = cq.from(domainClass);
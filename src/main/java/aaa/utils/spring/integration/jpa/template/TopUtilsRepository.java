@@ -1,21 +1,46 @@
 package aaa.utils.spring.integration.jpa.template;
 
+import static aaa.nvl.Nvl.nvl;
 import static com.google.common.collect.Streams.concat;
+import static java.lang.Math.max;
+import static java.util.Arrays.asList;
+import static java.util.Comparator.comparingLong;
 import static java.util.Optional.ofNullable;
 
+import aaa.utils.spring.integration.jpa.CachedCount;
 import aaa.utils.spring.integration.jpa.QueryParams;
+import aaa.utils.spring.integration.jpa.QueryResultCache;
+import aaa.utils.spring.integration.jpa.RepositoryWithEntityGraphImpl;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.EntityType;
 import jakarta.persistence.metamodel.SingularAttribute;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
+import org.apache.commons.lang3.ClassUtils;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,6 +49,9 @@ public class TopUtilsRepository {
 
   @Autowired EntityManager em;
 
+  private final Cache<List<Object>, CachedCount<TopValues<?>>> topValuesCache =
+      CacheBuilder.newBuilder().maximumSize(1000).build();
+
   @Transactional
   public <T, V> List<V> topValues(SingularAttribute<T, V> attribute, QueryParams<T> params) {
     CriteriaBuilder cb = em.getCriteriaBuilder();
@@ -55,4 +83,143 @@ public class TopUtilsRepository {
         .setMaxResults(ofNullable(params.getPageable()).map(Pageable::getPageSize).orElse(100))
         .getResultList();
   }
+
+  /**
+   * Ranked value counts cached for {@link QueryParams#getCountCacheTtl()} (one minute by default)
+   * by attribute and {@link QueryParams#resultCacheKey()}, params without it aren't cached. Cached
+   * counts turn stale early on changes of the entity seen by {@link QueryResultCache}. With {@code
+   * sampleModulo > 1} only rows with {@code id % sampleModulo = 0} are counted and counts are
+   * scaled up, non-numeric ids are always counted exactly.
+   */
+  @Transactional
+  public <T, V> TopValues<V> topValueCounts(
+      SingularAttribute<T, V> attribute, QueryParams<T> params, int sampleModulo) {
+    int limit = ofNullable(params.getPageable()).map(Pageable::getPageSize).orElse(100);
+    Optional<List<Object>> filterKey = params.resultCacheKey();
+    if (filterKey.isEmpty()) {
+      return executeTopValueCounts(attribute, params, limit, sampleModulo);
+    }
+    List<Object> key = asList(attribute, filterKey.get(), limit, max(sampleModulo, 1));
+    Duration ttl =
+        nvl(params.getCountCacheTtl(), RepositoryWithEntityGraphImpl.DEFAULT_COUNT_CACHE_TTL);
+    CachedCount<TopValues<?>> cached = topValuesCache.getIfPresent(key);
+    if (cached != null && cached.isValid(ttl)) {
+      return (TopValues<V>) cached.count();
+    }
+    Class<T> domainClass = attribute.getDeclaringType().getJavaType();
+    long generation =
+        QueryResultCache.generation(
+            em.getEntityManagerFactory().unwrap(SessionFactory.class), domainClass);
+    TopValues<V> topValues = executeTopValueCounts(attribute, params, limit, sampleModulo);
+    topValuesCache.put(key, new CachedCount<>(topValues, domainClass, generation));
+    return topValues;
+  }
+
+  <T, V> TopValues<V> executeTopValueCounts(
+      SingularAttribute<T, V> attribute, QueryParams<T> params, int limit, int sampleModulo) {
+    CriteriaBuilder cb = em.getCriteriaBuilder();
+    CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+    Class<T> domainClass = attribute.getDeclaringType().getJavaType();
+    Root<T> from = cq.from(domainClass);
+    Path<V> value = from.get(attribute.getName());
+    List<Predicate> where = new ArrayList<>();
+    ofNullable(params.getSpec()).ifPresent(spec -> where.add(spec.toPredicate(from, cq, cb)));
+    EntityType<T> entityType = em.getMetamodel().entity(domainClass);
+    Class<?> idType = entityType.getIdType().getJavaType();
+    boolean sampled =
+        sampleModulo > 1
+            && (ClassUtils.isAssignable(idType, Long.class)
+                || ClassUtils.isAssignable(idType, Integer.class));
+    if (sampled) {
+      Expression<Integer> id = from.get(entityType.getId(idType).getName());
+      where.add(cb.equal(cb.mod(id, sampleModulo), 0));
+    }
+    cq.multiselect(value, cb.count(from))
+        .where(where.toArray(Predicate[]::new))
+        .groupBy(value)
+        .orderBy(cb.desc(cb.count(from)));
+    long scale = sampled ? sampleModulo : 1;
+    List<ValueCount<V>> values =
+        params
+            .forScalarQuery()
+            .applyToQuery(em.createQuery(cq), em, domainClass)
+            .setMaxResults(limit)
+            .getResultList()
+            .stream()
+            .map(row -> new ValueCount<>((V) row.get(0), row.get(1, Long.class) * scale))
+            .toList();
+    return new TopValues<>(values, !sampled);
+  }
+
+  public void evictTopValuesCache() {
+    topValuesCache.invalidateAll();
+  }
+
+  /**
+   * Top value counts of several attributes over the same filtered rows in one UNION ALL query,
+   * ranked by count, at most page size (100 by default) per attribute. Each part selects its
+   * attribute in its own column, typed nulls fill the others, so values keep their java types.
+   */
+  @Transactional
+  @SafeVarargs
+  public final <T> Map<SingularAttribute<T, ?>, List<ValueCount<Object>>> facets(
+      QueryParams<T> params, SingularAttribute<T, ?>... attributes) {
+    Map<SingularAttribute<T, ?>, List<ValueCount<Object>>> facets = new LinkedHashMap<>();
+    if (attributes.length == 0) {
+      return facets;
+    }
+    HibernateCriteriaBuilder cb = em.unwrap(Session.class).getCriteriaBuilder();
+    Class<T> domainClass = attributes[0].getDeclaringType().getJavaType();
+    int limit = ofNullable(params.getPageable()).map(Pageable::getPageSize).orElse(100);
+    List<JpaCriteriaQuery<Tuple>> parts = new ArrayList<>();
+    for (int i = 0; i < attributes.length; i++) {
+      JpaCriteriaQuery<Tuple> part = cb.createTupleQuery();
+      Root<T> from = part.from(domainClass);
+      Path<?> value = facetValue(from, attributes[i]);
+      List<Selection<?>> selections = new ArrayList<>();
+      selections.add(cb.literal(i));
+      for (int j = 0; j < attributes.length; j++) {
+        selections.add(i == j ? value : cb.nullLiteral(facetType(attributes[j])));
+      }
+      selections.add(cb.count(from));
+      part.multiselect(selections).groupBy(value).orderBy(cb.desc(cb.count(from)));
+      Specification<T> spec = params.getSpec();
+      if (spec != null) {
+        part.where(spec.toPredicate(from, part, cb));
+      }
+      parts.add(part.fetch(limit));
+    }
+    JpaCriteriaQuery<Tuple> query =
+        parts.size() == 1
+            ? parts.get(0)
+            : cb.unionAll(
+                parts.get(0), parts.subList(1, parts.size()).toArray(CriteriaQuery[]::new));
+    Stream.of(attributes).forEach(attribute -> facets.put(attribute, new ArrayList<>()));
+    params
+        .forScalarQuery()
+        .applyToQuery(em.createQuery(query), em, domainClass)
+        .getResultList()
+        .forEach(
+            row -> {
+              int index = ((Number) row.get(0)).intValue();
+              long count = ((Number) row.get(attributes.length + 1)).longValue();
+              facets.get(attributes[index]).add(new ValueCount<>(row.get(index + 1), count));
+            });
+    facets
+        .values()
+        .forEach(counts -> counts.sort(comparingLong(ValueCount<Object>::count).reversed()));
+    return facets;
+  }
+
+  static <T> Path<?> facetValue(Root<T> from, SingularAttribute<T, ?> attribute) {
+    return attribute.getType() instanceof EntityType<?> entityType
+        ? from.get(attribute.getName()).get(entityType.getId(entityType.getIdType().getJavaType()))
+        : from.get(attribute.getName());
+  }
+
+  static Class<?> facetType(SingularAttribute<?, ?> attribute) {
+    return attribute.getType() instanceof EntityType<?> entityType
+        ? entityType.getIdType().getJavaType()
+        : attribute.getJavaType();
+  }
 }
@@ -0,0 +1,11 @@
+package aaa.utils.spring.integration.jpa.template;
+
+import java.util.List;
+
+/** Ranked value counts, counts are scaled up from a sample when not {@code exact} */
+public record TopValues<V>(List<ValueCount<V>> values, boolean exact) {
+
+  public List<V> asValues() {
+    return values.stream().map(ValueCount::value).toList();
+  }
+}
@@ -0,0 +1,4 @@
+package aaa.utils.spring.integration.jpa.template;
+
+/** Attribute value with count of rows having it, ids stand for association values */
+public record ValueCount<V>(V value, long count) {}
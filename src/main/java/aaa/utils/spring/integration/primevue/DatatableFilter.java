@@ -11,14 +11,18 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 import aaa.utils.spring.integration.jpa.IAbstractPOJO;
 import aaa.utils.spring.integration.jpa.QueryParams;
 import aaa.utils.spring.integration.jpa.SpecificationValuedMaker;
+import aaa.utils.spring.integration.primevue.FilterPlan.FieldShape;
+import aaa.utils.spring.integration.primevue.FilterPlan.FilterShape;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Root;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
@@ -115,34 +119,30 @@ public class DatatableFilter<T extends IAbstractPOJO> {
   }
 
   public Specification<T> extractSpecification() {
-    return Specification.allOf(
-        (List)
-            ofNullable(filters).orElse(emptyMap()).entrySet().stream()
-                .filter(e -> !equalsIgnoreCase(e.getKey(), GLOBAL))
-                .flatMap(
-                    e ->
-                        Stream.ofNullable(e.getValue())
-                            .map(
-                                fieldFilter -> {
-                                  List specs =
-                                      (fieldFilter.getOperator() == null
-                                              ? asList(fieldFilter)
-                                              : ofNullable(fieldFilter.getConstraints())
-                                                  .orElse(emptyList()))
-                                          .stream()
-                                              .filter(FieldConstraint::isValueProvided)
-                                              .map(
-                                                  constraint ->
-                                                      constraint.makeSpecification(e.getKey()))
-                                              .filter(Objects::nonNull)
-                                              .toList();
-                                  return equalsIgnoreCase(
-                                          "and",
-                                          ofNullable(fieldFilter.getOperator()).orElse("and"))
-                                      ? Specification.allOf(specs)
-                                      : Specification.anyOf(specs);
-                                }))
-                .toList());
+    List<FieldShape> shape = new ArrayList<>();
+    List<List<Object>> values = new ArrayList<>();
+    new TreeMap<>(ofNullable(filters).orElse(emptyMap()))
+        .forEach(
+            (field, fieldFilter) -> {
+              if (fieldFilter == null || equalsIgnoreCase(field, GLOBAL)) {
+                return;
+              }
+              List<FieldConstraint> constraints =
+                  (fieldFilter.getOperator() == null
+                          ? List.<FieldConstraint>of(fieldFilter)
+                          : ofNullable(fieldFilter.getConstraints()).orElse(emptyList()))
+                      .stream()
+                          .filter(Objects::nonNull)
+                          .filter(FieldConstraint::isValueProvided)
+                          .toList();
+              shape.add(
+                  new FieldShape(
+                      field,
+                      equalsIgnoreCase("and", ofNullable(fieldFilter.getOperator()).orElse("and")),
+                      constraints.stream().map(FieldConstraint::getMatchMode).toList()));
+              values.add(constraints.stream().map(FieldConstraint::getValue).toList());
+            });
+    return FilterPlan.of(new FilterShape(shape)).bind(values);
   }
 
   Sort extractSort() {
@@ -170,5 +170,10 @@ public class DatatableFilter<T extends IAbstractPOJO> {
         .build();
   }
 
+  /** Same for requests with the same filters, sorting and page, whatever their order */
+  public Optional<String> fingerprint() {
+    return extractQueryParams().fingerprint();
+  }
+
   public static final int DEFAULT_PAGE_SIZE = 20;
 }
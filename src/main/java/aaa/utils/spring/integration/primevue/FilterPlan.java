@@ -0,0 +1,101 @@
+package aaa.utils.spring.integration.primevue;
+
+import static java.util.Arrays.asList;
+
+import aaa.utils.spring.integration.jpa.Fingerprints;
+import aaa.utils.spring.integration.jpa.JpaUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import lombok.AllArgsConstructor;
+import lombok.SneakyThrows;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filter shape (fields in stable order, operators and match modes) compiled once: match modes and
+ * path resolvers are looked up at compile time, requests with the same shape only bind values
+ */
+@AllArgsConstructor
+class FilterPlan {
+
+  record FieldShape(String field, boolean and, List<String> matchModes) {}
+
+  record FilterShape(List<FieldShape> fields) {}
+
+  static final Cache<FilterShape, FilterPlan> plans =
+      CacheBuilder.newBuilder().maximumSize(1000).build();
+
+  FilterShape shape;
+  List<CompiledField> fields;
+
+  @AllArgsConstructor
+  static class CompiledField {
+    Function<Root, Path> path;
+    boolean and;
+    List<Optional<MatchMode>> matchModes;
+
+    Specification bind(List<Object> values) {
+      List<Specification> specs = new ArrayList<>();
+      for (int i = 0; i < matchModes.size(); i++) {
+        Object value = values.get(i);
+        matchModes.get(i).map(mode -> mode.makeSpecification(path, value)).ifPresent(specs::add);
+      }
+      return and ? Specification.allOf((List) specs) : Specification.anyOf((List) specs);
+    }
+  }
+
+  @SneakyThrows
+  static FilterPlan of(FilterShape shape) {
+    return plans.get(shape, () -> compile(shape));
+  }
+
+  static FilterPlan compile(FilterShape shape) {
+    return new FilterPlan(
+        shape,
+        shape.fields().stream()
+            .map(
+                field ->
+                    new CompiledField(
+                        JpaUtils.makePathResolver(field.field()),
+                        field.and(),
+                        field.matchModes().stream().map(MatchMode::of).toList()))
+            .toList());
+  }
+
+  /** {@code values} are given per field of the shape, per match mode of the field */
+  <T> Specification<T> bind(List<List<Object>> values) {
+    List<Specification<T>> specs = new ArrayList<>();
+    for (int i = 0; i < fields.size(); i++) {
+      specs.add(fields.get(i).bind(values.get(i)));
+    }
+    return Fingerprints.canonical(
+        Specification.allOf(specs.stream().filter(Objects::nonNull).toList()),
+        canonicalForm(values));
+  }
+
+  /** Constraints of a field as unordered match mode and value pairs */
+  List<Object> canonicalForm(List<List<Object>> values) {
+    List<Object> canonical = new ArrayList<>();
+    for (int i = 0; i < fields.size(); i++) {
+      FieldShape field = shape.fields().get(i);
+      List<List<Object>> constraints = new ArrayList<>();
+      for (int j = 0; j < field.matchModes().size(); j++) {
+        constraints.add(asList(field.matchModes().get(j), values.get(i).get(j)));
+      }
+      canonical.add(
+          Map.of(
+              "field", field.field(),
+              "and", field.and(),
+              "constraints", new LinkedHashSet<>(constraints)));
+    }
+    return canonical;
+  }
+}
@@ -1,6 +1,5 @@
 package aaa.utils.spring.integration.primevue;
 
-import static aaa.i18n.ru.TransliterateUtils.variateFix;
 import static aaa.nvl.Nvl.nvl;
 import static java.util.Collections.emptyMap;
 import static java.util.Optional.empty;
@@ -10,11 +9,14 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.lowerCase;
 
 import aaa.format.SafeParse;
+import aaa.utils.spring.integration.jpa.CaseInsensitiveMatching;
 import aaa.utils.spring.integration.jpa.IAbstractPOJO;
 import aaa.utils.spring.integration.jpa.JpaUtils.LikeMatchMode;
+import aaa.utils.spring.integration.jpa.SearchTerms;
 import aaa.utils.spring.integration.jpa.SpecificationMaker;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaBuilder.In;
 import jakarta.persistence.criteria.Path;
@@ -67,8 +69,9 @@ public abstract class MatchMode implements SpecificationMaker {
         public Specification makeSpecification(Function<Root, Path> field, Object value) {
           return (root, query, cb) ->
               stringCondition(
-                  s -> cb.like(cb.lower(field.apply(root)), s),
+                  s -> CaseInsensitiveMatching.like(cb, field.apply(root), s),
                   LikeMatchMode.STARTS_WITH.makeTemplate(lowerCase((String) value)),
+                  query,
                   cb);
         }
       };
@@ -79,8 +82,9 @@ public abstract class MatchMode implements SpecificationMaker {
         public Specification makeSpecification(Function<Root, Path> field, Object value) {
           return (root, query, cb) ->
               stringCondition(
-                  s -> cb.like(cb.lower(field.apply(root)), s),
+                  s -> CaseInsensitiveMatching.like(cb, field.apply(root), s),
                   LikeMatchMode.ANYWHERE.makeTemplate(lowerCase((String) value)),
+                  query,
                   cb);
         }
       };
@@ -91,8 +95,9 @@ public abstract class MatchMode implements SpecificationMaker {
         public Specification makeSpecification(Function<Root, Path> field, Object value) {
           return (root, query, cb) ->
               stringCondition(
-                  s -> cb.notLike(cb.lower(field.apply(root)), s),
+                  s -> CaseInsensitiveMatching.notLike(cb, field.apply(root), s),
                   LikeMatchMode.ANYWHERE.makeTemplate(lowerCase((String) value)),
+                  query,
                   cb);
         }
       };
@@ -103,8 +108,9 @@ public abstract class MatchMode implements SpecificationMaker {
         public Specification makeSpecification(Function<Root, Path> field, Object value) {
           return (root, query, cb) ->
               stringCondition(
-                  s -> cb.like(cb.lower(field.apply(root)), s),
+                  s -> CaseInsensitiveMatching.like(cb, field.apply(root), s),
                   LikeMatchMode.ENDS_WITH.makeTemplate(lowerCase((String) value)),
+                  query,
                   cb);
         }
       };
@@ -116,7 +122,10 @@ public abstract class MatchMode implements SpecificationMaker {
           return (root, query, cb) ->
               value instanceof String stringValue
                   ? stringCondition(
-                      s -> cb.equal(cb.lower(field.apply(root)), s), lowerCase(stringValue), cb)
+                      s -> CaseInsensitiveMatching.equal(cb, field.apply(root), s),
+                      lowerCase(stringValue),
+                      query,
+                      cb)
                   : cb.equal(field.apply(root), value);
         }
       };
@@ -128,7 +137,10 @@ public abstract class MatchMode implements SpecificationMaker {
           return (root, query, cb) ->
               value instanceof String stringValue
                   ? stringCondition(
-                      s -> cb.notEqual(cb.lower(field.apply(root)), s), lowerCase(stringValue), cb)
+                      s -> CaseInsensitiveMatching.notEqual(cb, field.apply(root), s),
+                      lowerCase(stringValue),
+                      query,
+                      cb)
                   : cb.notEqual(field.apply(root), value);
         }
       };
@@ -143,7 +155,7 @@ public abstract class MatchMode implements SpecificationMaker {
             boolean isPojo = IAbstractPOJO.class.isAssignableFrom(bindableJavaType);
             In in =
                 isString
-                    ? cb.in(cb.lower(field.apply(root)))
+                    ? cb.in(CaseInsensitiveMatching.normalized(cb, field.apply(root)))
                     : isPojo ? cb.in(field.apply(root).get("id")) : cb.in(field.apply(root));
             if (isPojo) {
               if (value instanceof Map mapValue) {
@@ -345,8 +357,13 @@ public abstract class MatchMode implements SpecificationMaker {
   }
 
   static Predicate stringCondition(
-      Function<String, Predicate> condition, String value, CriteriaBuilder cb) {
-    return cb.or(variateFix(value).map(condition).toArray(Predicate[]::new));
+      Function<String, Predicate> condition,
+      String value,
+      CommonAbstractCriteria query,
+      CriteriaBuilder cb) {
+    List<String> variants = SearchTerms.variants(value, SearchTerms.variantsPerWord(1));
+    SearchTerms.recordPredicates(query, variants.size(), SearchTerms.isTruncated(value, variants));
+    return cb.or(variants.stream().map(condition).toArray(Predicate[]::new));
   }
 
   public static Optional<MatchMode> of(String name) {
@@ -0,0 +1,30 @@
+package aaa.utils.spring.metrics;
+
+import aaa.utils.spring.integration.jpa.JpaUtils;
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+public class EntityGraphCacheMetrics implements MeterBinder {
+
+  @Override
+  public void bindTo(MeterRegistry meterRegistry) {
+
+    Gauge.builder(
+            "jpa.entityGraph.cache.hitCount",
+            () -> JpaUtils.entityGraphCacheStat(CacheStats::hitCount))
+        .description("Entity graph cache hit count")
+        .register(meterRegistry);
+
+    Gauge.builder(
+            "jpa.entityGraph.cache.missCount",
+            () -> JpaUtils.entityGraphCacheStat(CacheStats::missCount))
+        .description("Entity graph cache miss count")
+        .register(meterRegistry);
+
+    Gauge.builder("jpa.entityGraph.cache.size", JpaUtils::entityGraphCacheSize)
+        .description("Cached entity graphs count")
+        .register(meterRegistry);
+  }
+}
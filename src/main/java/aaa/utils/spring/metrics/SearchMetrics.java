@@ -0,0 +1,26 @@
+package aaa.utils.spring.metrics;
+
+import aaa.utils.spring.integration.jpa.SearchTerms;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+public class SearchMetrics implements MeterBinder {
+
+  @Override
+  public void bindTo(MeterRegistry meterRegistry) {
+
+    DistributionSummary predicates =
+        DistributionSummary.builder("jpa.search.predicates")
+            .description("Search variant predicates per query")
+            .register(meterRegistry);
+    SearchTerms.setPredicateCountListener(predicates::record);
+
+    Counter truncated =
+        Counter.builder("jpa.search.truncated")
+            .description("Searches with variants cut off by limits")
+            .register(meterRegistry);
+    SearchTerms.setTruncationListener(truncated::increment);
+  }
+}
@@ -1,11 +1,14 @@
 package aaa.utils.spring.integration.jpa;
 
 import static aaa.utils.spring.integration.jpa.DaoUtils.nvlZero;
+import static aaa.utils.spring.integration.jpa.DaoUtils.paddedBatches;
 import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.ZERO;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import aaa.utils.spring.integration.jpa.Data.Fields;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class DaoUtilsTest {
@@ -42,4 +45,19 @@ class DaoUtilsTest {
         .extracting(Data::getSum)
         .isNull();
   }
+
+  @Test
+  public void testPaddedBatches() {
+    assertThat(paddedBatches(List.of(), 4)).isEmpty();
+    assertThat(paddedBatches(List.of(1), 4)).containsExactly(List.of(1));
+    assertThat(paddedBatches(List.of(1, 2, 3), 4)).containsExactly(List.of(1, 2, 3, 3));
+    assertThat(paddedBatches(List.of(1, 2, 3, 4, 5, 6), 4))
+        .containsExactly(List.of(1, 2, 3, 4), List.of(5, 6));
+    assertThat(paddedBatches(List.of(1, 2, 3, 4, 5), 4))
+        .containsExactly(List.of(1, 2, 3, 4), List.of(5));
+    assertThatThrownBy(() -> paddedBatches(List.of(1), 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> paddedBatches(List.of(1), -1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
 }
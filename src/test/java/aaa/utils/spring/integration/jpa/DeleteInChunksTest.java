@@ -0,0 +1,151 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import jakarta.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+class DeleteInChunksTest {
+
+  static SessionFactory sessionFactory;
+  static RepositoryWithEntityGraphImpl<Item, Long> repository;
+
+  final AtomicInteger commits = new AtomicInteger();
+  final List<Long> progress = new ArrayList<>();
+  final List<Long> commitTimes = new ArrayList<>();
+
+  @BeforeAll
+  static void createDatabase() {
+    sessionFactory =
+        new Configuration()
+            .addAnnotatedClass(Item.class)
+            .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:chunks")
+            .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .buildSessionFactory();
+    EntityManager em = SharedEntityManagerCreator.createSharedEntityManager(sessionFactory);
+    repository =
+        new RepositoryWithEntityGraphImpl<>(
+            (JpaEntityInformation<Item, Long>)
+                JpaEntityInformationSupport.getEntityInformation(Item.class, em),
+            em);
+  }
+
+  @AfterAll
+  static void closeDatabase() {
+    sessionFactory.close();
+  }
+
+  @BeforeEach
+  void insertItems() {
+    sessionFactory.inTransaction(
+        session -> {
+          session.createMutationQuery("delete from Item").executeUpdate();
+          LongStream.rangeClosed(1, 10)
+              .mapToObj(id -> new Item(id, "Item " + id, null, null, true))
+              .forEach(session::persist);
+        });
+  }
+
+  /** Fails to commit the given transaction, counting from 1 */
+  JpaTransactionManager transactionManager(int failingCommit) {
+    return new JpaTransactionManager(sessionFactory) {
+      @Override
+      protected void doCommit(DefaultTransactionStatus status) {
+        if (commits.incrementAndGet() == failingCommit) {
+          throw new TransactionSystemException("Commit failed");
+        }
+        super.doCommit(status);
+        commitTimes.add(System.nanoTime());
+      }
+    };
+  }
+
+  long remaining() {
+    return sessionFactory.fromSession(
+        session -> session.createQuery("select count(*) from Item", Long.class).getSingleResult());
+  }
+
+  @Test
+  public void testFailedChunkKeepsPreviousChunks() {
+    assertThatThrownBy(
+            () ->
+                repository.deleteInChunks(
+                    QueryParams.<Item>build().withBatchSize(3),
+                    transactionManager(3),
+                    null,
+                    progress::add))
+        .isInstanceOf(TransactionSystemException.class);
+
+    assertThat(progress).containsExactly(3L, 6L);
+    assertThat(remaining()).isEqualTo(4L);
+  }
+
+  @Test
+  public void testStopsOnShortChunk() {
+    long deleted =
+        repository.deleteInChunks(
+            QueryParams.<Item>build().withBatchSize(4), transactionManager(0), null, progress::add);
+
+    assertThat(deleted).isEqualTo(10L);
+    assertThat(progress).containsExactly(4L, 8L, 10L);
+    assertThat(commits.get()).isEqualTo(3);
+    assertThat(remaining()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testDeletesOnlyMatching() {
+    long deleted =
+        repository.deleteInChunks(
+            QueryParams.<Item>build()
+                .withSpec(IdFilter.<Long, Item>notIds(List.of(1L, 2L)))
+                .withBatchSize(3),
+            transactionManager(0),
+            null,
+            progress::add);
+
+    assertThat(deleted).isEqualTo(8L);
+    assertThat(remaining()).isEqualTo(2L);
+  }
+
+  @Test
+  public void testPausesBetweenChunks() {
+    Duration pause = Duration.ofMillis(50);
+    long deleted =
+        repository.deleteInChunks(
+            QueryParams.<Item>build().withBatchSize(4), transactionManager(0), pause, null);
+
+    assertThat(deleted).isEqualTo(10L);
+    assertThat(commitTimes).hasSize(3);
+    for (int i = 1; i < commitTimes.size(); i++) {
+      assertThat(commitTimes.get(i) - commitTimes.get(i - 1) >= pause.toNanos()).isTrue();
+    }
+  }
+
+  @Test
+  public void testRejectsNonPositiveBatchSize() {
+    assertThatThrownBy(
+            () ->
+                repository.deleteInChunks(
+                    QueryParams.<Item>build().withBatchSize(0), transactionManager(0), null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(remaining()).isEqualTo(10L);
+  }
+}
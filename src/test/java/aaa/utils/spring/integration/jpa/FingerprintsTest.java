@@ -0,0 +1,82 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+class FingerprintsTest {
+
+  @Test
+  public void testFilterIsOrderIndependent() {
+    assertThat(Fingerprints.fingerprint(IdFilter.forIds(List.of(1L, 2L))))
+        .isPresent()
+        .isEqualTo(Fingerprints.fingerprint(IdFilter.forIds(List.of(2L, 1L))))
+        .isNotEqualTo(Fingerprints.fingerprint(IdFilter.forIds(List.of(1L, 3L))));
+  }
+
+  @Test
+  public void testListsKeepOrderAndDuplicates() {
+    assertThat(Fingerprints.canonicalJson(List.of("from", "to")))
+        .isNotEqualTo(Fingerprints.canonicalJson(List.of("to", "from")));
+    assertThat(Fingerprints.canonicalJson(List.of("a", "a")))
+        .isNotEqualTo(Fingerprints.canonicalJson(List.of("a")));
+    assertThat(Fingerprints.canonicalJson(ItemFilter.builder().names(List.of("a", "b")).build()))
+        .isNotEqualTo(
+            Fingerprints.canonicalJson(ItemFilter.builder().names(List.of("b", "a")).build()));
+    assertThat(Fingerprints.canonicalJson(Set.of("a", "b")))
+        .isEqualTo(Fingerprints.canonicalJson(new LinkedHashSet<>(List.of("b", "a"))));
+  }
+
+  @Test
+  public void testMapKeysKeepType() {
+    assertThat(Fingerprints.canonicalJson(Map.of(1, "x")))
+        .isNotEqualTo(Fingerprints.canonicalJson(Map.of("1", "x")));
+  }
+
+  @Test
+  public void testAllOfIsOrderIndependent() {
+    Specification<IAbstractPOJO<Long>> first = IdFilter.forId(1L);
+    Specification<IAbstractPOJO<Long>> second = IdFilter.notId(2L);
+    assertThat(Fingerprints.fingerprint(Fingerprints.allOf(first, second)))
+        .isPresent()
+        .isEqualTo(Fingerprints.fingerprint(Fingerprints.allOf(second, first)));
+  }
+
+  @Test
+  public void testCanonicalJson() {
+    assertThat(
+            Fingerprints.canonicalJson(
+                Map.of("b", new BigDecimal("1.50"), "a", "x\"y", "c", Map.of())))
+        .contains("{\"string:a\":\"x\\\"y\",\"string:b\":1.5,\"string:c\":{}}");
+    assertThat(Fingerprints.canonicalJson(PageRequest.of(1, 20, Sort.by("name"))))
+        .contains("{\"page\":1,\"size\":20,\"sort\":[[\"name\",\"ASC\",false,\"NATIVE\"]]}");
+  }
+
+  @Test
+  public void testLambdaHasNoFingerprint() {
+    Specification<IAbstractPOJO<Long>> spec = (root, query, cb) -> null;
+    assertThat(Fingerprints.fingerprint(spec)).isEmpty();
+    assertThat(QueryParams.<IAbstractPOJO<Long>>build().withSpec(spec).extractCacheKey())
+        .isSameAs(spec);
+  }
+
+  @Test
+  public void testResultCacheKeyNeedsCanonicalForm() {
+    QueryParams<IAbstractPOJO<Long>> params = QueryParams.<IAbstractPOJO<Long>>build();
+    Specification<IAbstractPOJO<Long>> lambda = (root, query, cb) -> null;
+    assertThat(params.resultCacheKey()).isPresent();
+    assertThat(params.withSpec(IdFilter.forId(1L)).resultCacheKey()).isPresent();
+    assertThat(params.withSpec(lambda).resultCacheKey()).isEmpty();
+    assertThat(params.withSpec(lambda).withCacheKey("key").resultCacheKey()).isPresent();
+    assertThat(params.resultCacheKey())
+        .isNotEqualTo(params.withCountStrategy(CountStrategy.CACHED).resultCacheKey());
+  }
+}
@@ -0,0 +1,123 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import aaa.utils.spring.integration.jpa.IAbstractFilter.DateRange;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.data.jpa.domain.Specification;
+
+/** Filters evaluated in memory must select the same rows as the database does */
+class InMemoryEvaluatorDatabaseTest {
+
+  static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 15, 12, 0);
+
+  static SessionFactory sessionFactory;
+  static List<Item> items;
+
+  @BeforeAll
+  static void createDatabase() {
+    sessionFactory =
+        new Configuration()
+            .addAnnotatedClass(Item.class)
+            .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:evaluator")
+            .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .buildSessionFactory();
+    sessionFactory.inTransaction(
+        session ->
+            Stream.of(
+                    new Item(1L, "Apple", new BigDecimal("10.5"), NOW.minusDays(3), true),
+                    new Item(2L, "grape juice", new BigDecimal("3"), NOW.minusDays(1), false),
+                    new Item(3L, "Pear", null, NOW, null),
+                    new Item(4L, null, new BigDecimal("42"), null, true),
+                    new Item(5L, "pineapple 100%", BigDecimal.ZERO, NOW.plusDays(2), false),
+                    new Item(6L, "Apple_tree", new BigDecimal("10.50"), NOW.minusDays(1), true))
+                .forEach(session::persist));
+    items =
+        sessionFactory.fromSession(
+            session -> session.createQuery("from Item", Item.class).getResultList());
+  }
+
+  @AfterAll
+  static void closeDatabase() {
+    sessionFactory.close();
+  }
+
+  static Stream<Specification<Item>> specifications() {
+    return Stream.of(
+        ItemFilter.builder().build(),
+        ItemFilter.builder().name("ap").build(),
+        ItemFilter.builder().name("100%").build(),
+        ItemFilter.builder().name("e_t").build(),
+        ItemFilter.builder().words("apple pine").build(),
+        ItemFilter.builder().names(List.of("Apple", "Pear")).build(),
+        ItemFilter.builder().notIds(Set.of(1L, 2L)).build(),
+        ItemFilter.builder().minAmount(new BigDecimal("10.5")).build(),
+        ItemFilter.builder().active(true).build(),
+        ItemFilter.builder().active(false).build(),
+        ItemFilter.builder().noName(true).build(),
+        ItemFilter.builder().noName(false).active(true).build(),
+        ItemFilter.builder()
+            .created(DateRange.builder().start(NOW.minusDays(1)).finish(NOW).build())
+            .build(),
+        ItemFilter.builder()
+            .created(
+                DateRange.builder()
+                    .start(NOW.minusDays(1))
+                    .strictStart(true)
+                    .finish(NOW.plusDays(2))
+                    .strictFinish(true)
+                    .build())
+            .build(),
+        IdFilter.<Long, Item>forIds(List.of(2L, 4L, 7L)),
+        IdFilter.<Long, Item>forIds(List.of()),
+        IdFilter.<Long, Item>notId(3L),
+        Specification.not(ItemFilter.builder().minAmount(BigDecimal.TEN).build()),
+        Specification.not(ItemFilter.builder().active(true).build()),
+        Specification.not(ItemFilter.builder().names(List.of("Apple")).build()),
+        Specification.where(ItemFilter.builder().active(true).build())
+            .or(ItemFilter.builder().name("pear").build()),
+        Specification.where(ItemFilter.builder().minAmount(BigDecimal.ONE).build())
+            .and(IdFilter.<Long, Item>notId(1L)));
+  }
+
+  @ParameterizedTest
+  @MethodSource("specifications")
+  void testSameRowsAsDatabase(Specification<Item> spec) {
+    try (Session session = sessionFactory.openSession()) {
+      CriteriaBuilder cb = session.getCriteriaBuilder();
+      CriteriaQuery<Item> query = cb.createQuery(Item.class);
+      Root<Item> root = query.from(Item.class);
+      Predicate predicate = spec.toPredicate(root, query, cb);
+      if (predicate != null) {
+        query.where(predicate);
+      }
+      List<Long> expected =
+          session.createQuery(query).getResultList().stream().map(Item::getId).sorted().toList();
+
+      List<Long> actual =
+          items.stream()
+              .filter(InMemoryEvaluator.compile(session, Item.class, spec))
+              .map(Item::getId)
+              .sorted()
+              .toList();
+
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+}
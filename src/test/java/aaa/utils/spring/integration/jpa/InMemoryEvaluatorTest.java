@@ -0,0 +1,34 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class InMemoryEvaluatorTest {
+
+  @Test
+  public void testLikePattern() {
+    assertThat(InMemoryEvaluator.likePattern("ab%c\\_d_", '\\', true).matcher("abXc_dZ").matches())
+        .isTrue();
+    assertThat(InMemoryEvaluator.likePattern("ab%", null, true).matcher("ABc").matches()).isFalse();
+    assertThat(InMemoryEvaluator.likePattern("ab%", null, false).matcher("ABc").matches()).isTrue();
+  }
+
+  @Test
+  public void testThreeValuedIn() {
+    assertThat(InMemoryEvaluator.in(1, Arrays.asList(2, null))).isNull();
+    assertThat(InMemoryEvaluator.in(2L, Arrays.asList(2, null))).isTrue();
+    assertThat(InMemoryEvaluator.in(null, Arrays.asList(2))).isNull();
+  }
+
+  @Test
+  public void testCompareDates() {
+    assertThat(
+            InMemoryEvaluator.compare(
+                LocalDateTime.of(2020, 1, 1, 10, 0), LocalDate.of(2020, 1, 2), c -> c < 0))
+        .isTrue();
+  }
+}
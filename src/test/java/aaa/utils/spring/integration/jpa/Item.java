@@ -0,0 +1,24 @@
+package aaa.utils.spring.integration.jpa;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class Item extends AbstractPOJO<Long> {
+
+  @Id Long id;
+  String name;
+  BigDecimal amount;
+  LocalDateTime created;
+  Boolean active;
+}
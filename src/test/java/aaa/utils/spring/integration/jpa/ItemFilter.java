@@ -0,0 +1,36 @@
+package aaa.utils.spring.integration.jpa;
+
+import aaa.utils.spring.integration.jpa.IAbstractFilter.DateRange;
+import jakarta.persistence.criteria.Predicate;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class ItemFilter implements IFilter<Item> {
+
+  String name;
+  String words;
+  Collection<String> names;
+  Collection<Long> notIds;
+  BigDecimal minAmount;
+  Boolean active;
+  Boolean noName;
+  DateRange created;
+
+  @Override
+  public Stream<Predicate> asPredicateStream(Context<Item> ctx) {
+    return Stream.of(
+        ctx.like(Item_.name, name),
+        ctx.likeByWords(Item_.name, words),
+        ctx.in(Item_.name, names),
+        ctx.notIn(IdFilter.ID_NAME, notIds),
+        ctx.compare(ctx.root.get(Item_.amount), minAmount, ctx.cb::greaterThanOrEqualTo, null),
+        ctx.isTrueFalse(Item_.active, active),
+        ctx.nullCondition(Item_.name, noName),
+        ctx.dateRange(Item_.created, created));
+  }
+}
@@ -0,0 +1,16 @@
+package aaa.utils.spring.integration.jpa;
+
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.StaticMetamodel;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@StaticMetamodel(Item.class)
+public abstract class Item_ {
+
+  public static volatile SingularAttribute<Item, Long> id;
+  public static volatile SingularAttribute<Item, String> name;
+  public static volatile SingularAttribute<Item, BigDecimal> amount;
+  public static volatile SingularAttribute<Item, LocalDateTime> created;
+  public static volatile SingularAttribute<Item, Boolean> active;
+}
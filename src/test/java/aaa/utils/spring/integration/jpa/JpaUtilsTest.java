@@ -0,0 +1,27 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class JpaUtilsTest {
+
+  static class NoGetter {
+    private final int hidden = 7;
+  }
+
+  @Test
+  public void testAccessorIsGeneratedOncePerAttribute() {
+    Function<Object, Object> accessor = JpaUtils.accessor(Data.class, "count");
+    assertThat(accessor.apply(Data.builder().count(3L).build())).isEqualTo(3L);
+    // a LambdaMetafactory class, not a reflective Method wrapper
+    assertThat(accessor.getClass().isHidden()).isTrue();
+    assertThat(JpaUtils.accessor(Data.class, "count")).isSameAs(accessor);
+  }
+
+  @Test
+  public void testAccessorReadsFieldWithoutGetter() {
+    assertThat(JpaUtils.accessor(NoGetter.class, "hidden").apply(new NoGetter())).isEqualTo(7);
+  }
+}
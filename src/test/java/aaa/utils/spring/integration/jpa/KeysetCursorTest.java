@@ -0,0 +1,53 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+class KeysetCursorTest {
+
+  @Test
+  public void testRoundTrip() {
+    Map<String, Object> keys = new LinkedHashMap<>();
+    keys.put("customer.name", "a&b=c d");
+    keys.put("count", 42L);
+    keys.put("id", null);
+    KeysetScrollPosition position =
+        KeysetCursor.decode(KeysetCursor.encode(ScrollPosition.forward(keys)));
+    assertThat(position.getKeys())
+        .containsOnlyKeys("customer.name", "count", "id")
+        .containsEntry("customer.name", "a&b=c d")
+        .containsEntry("count", "42");
+    assertThat(position.getKeys().get("id")).isNull();
+  }
+
+  @Test
+  public void testTemporalRoundTrip() {
+    LocalDateTime created = LocalDateTime.of(2024, 3, 15, 12, 30, 5);
+    Instant instant = Instant.parse("2024-03-15T09:30:05.123Z");
+    Map<String, Object> keys = new LinkedHashMap<>();
+    keys.put("created", created);
+    keys.put("day", created.toLocalDate());
+    keys.put("instant", instant);
+    Map<String, Object> decoded =
+        KeysetCursor.decode(KeysetCursor.encode(ScrollPosition.forward(keys))).getKeys();
+    assertThat(KeysetCursor.convert(decoded.get("created"), LocalDateTime.class))
+        .isEqualTo(created);
+    assertThat(KeysetCursor.convert(decoded.get("day"), LocalDate.class))
+        .isEqualTo(created.toLocalDate());
+    assertThat(KeysetCursor.convert(decoded.get("instant"), Instant.class)).isEqualTo(instant);
+  }
+
+  @Test
+  public void testBlankTokenIsInitial() {
+    assertThat(KeysetCursor.decode(null).isInitial()).isTrue();
+    assertThat(KeysetCursor.decode(" ").isInitial()).isTrue();
+  }
+}
@@ -0,0 +1,196 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class RepositoryWithEntityGraphImplTest {
+
+  static SessionFactory sessionFactory;
+  static RepositoryWithEntityGraphImpl<Item, Long> repository;
+  static TransactionTemplate transactions;
+
+  @BeforeAll
+  static void createDatabase() {
+    sessionFactory =
+        new Configuration()
+            .addAnnotatedClass(Item.class)
+            .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:repository")
+            .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .buildSessionFactory();
+    EntityManager em = SharedEntityManagerCreator.createSharedEntityManager(sessionFactory);
+    repository =
+        new RepositoryWithEntityGraphImpl<>(
+            (JpaEntityInformation<Item, Long>)
+                JpaEntityInformationSupport.getEntityInformation(Item.class, em),
+            em);
+    transactions = new TransactionTemplate(new JpaTransactionManager(sessionFactory));
+  }
+
+  @AfterAll
+  static void closeDatabase() {
+    sessionFactory.close();
+  }
+
+  @BeforeEach
+  void insertItems() {
+    sessionFactory.inTransaction(
+        session -> {
+          session.createMutationQuery("delete from Item").executeUpdate();
+          LongStream.rangeClosed(1, 10)
+              .mapToObj(id -> new Item(id, "Item " + id, null, null, true))
+              .forEach(session::persist);
+        });
+    repository.evictCountCache();
+  }
+
+  @AfterEach
+  void resetParallelQueries() {
+    ParallelQueries.settings.remove(sessionFactory);
+  }
+
+  /** Bypasses the persistence context and entity change events, so no cache notices it */
+  void insertUnnoticed(long id) {
+    sessionFactory.inTransaction(
+        session ->
+            session
+                .createNativeMutationQuery(
+                    "insert into Item (id, name, active) values (:id, :name, true)")
+                .setParameter("id", id)
+                .setParameter("name", "Item " + id)
+                .executeUpdate());
+  }
+
+  static QueryParams<Item> page(int page, int size) {
+    return QueryParams.<Item>build().withPageable(PageRequest.of(page, size, Sort.by("id")));
+  }
+
+  static CountedPage<Item> counted(Page<Item> page) {
+    return (CountedPage<Item>) page;
+  }
+
+  @Test
+  public void testUpdateReturnsRowsAndEvictsCachedCount() {
+    QueryParams<Item> active =
+        page(0, 3)
+            .withSpec(ItemFilter.builder().active(true).build())
+            .withCachedCount(Duration.ofMinutes(1));
+    assertThat(repository.findAll(active).getTotalElements()).isEqualTo(10L);
+
+    long updated =
+        transactions.execute(
+            status ->
+                repository.update(
+                    QueryParams.<Item>build()
+                        .withSpec(IdFilter.<Long, Item>notIds(List.of(1L, 2L))),
+                    Map.of(Item_.active, false)));
+    long unmatched =
+        transactions.execute(
+            status ->
+                repository.update(
+                    QueryParams.<Item>build().withSpec(IdFilter.<Long, Item>forId(42L)),
+                    Map.of(Item_.active, false)));
+
+    assertThat(updated).isEqualTo(8L);
+    assertThat(unmatched).isEqualTo(0L);
+    assertThat(repository.findAll(active).getTotalElements()).isEqualTo(2L);
+  }
+
+  @Test
+  public void testCachedTotal() {
+    QueryParams<Item> params = page(0, 3).withCachedCount(Duration.ofMinutes(1));
+    assertThat(repository.findAll(params).getTotalElements()).isEqualTo(10L);
+
+    insertUnnoticed(11L);
+    CountedPage<Item> cached = counted(repository.findAll(params));
+    assertThat(cached.getTotalElements()).isEqualTo(10L);
+    assertThat(cached.isTotalExact()).isTrue();
+    assertThat(repository.findAll(params.withCountCacheTtl(Duration.ZERO)).getTotalElements())
+        .isEqualTo(11L);
+
+    sessionFactory.inTransaction(session -> session.persist(new Item(12L, null, null, null, true)));
+    assertThat(repository.findAll(params).getTotalElements()).isEqualTo(12L);
+  }
+
+  @Test
+  public void testNextPageOnlyTotal() {
+    CountedPage<Item> first = counted(repository.findAll(page(0, 3).withNextPageOnly()));
+    assertThat(first.getContent()).hasSize(3);
+    assertThat(first.hasNext()).isTrue();
+    assertThat(first.isTotalExact()).isFalse();
+    assertThat(first.isCountQueried()).isFalse();
+    assertThat(first.getTotalElements()).isEqualTo(4L);
+
+    CountedPage<Item> last = counted(repository.findAll(page(3, 3).withNextPageOnly()));
+    assertThat(last.getContent()).hasSize(1);
+    assertThat(last.hasNext()).isFalse();
+    assertThat(last.isTotalExact()).isTrue();
+    assertThat(last.getTotalElements()).isEqualTo(10L);
+  }
+
+  @Test
+  public void testResultCacheInvalidatedAfterCommit() {
+    QueryParams<Item> params = page(0, 20).withResultCache();
+    Page<Item> loaded = repository.findAll(params);
+    assertThat(loaded.getContent()).hasSize(10);
+
+    insertUnnoticed(11L);
+    Page<Item> cached = repository.findAll(params);
+    assertThat(cached.getContent()).hasSize(10);
+    assertThat(cached.getContent().get(0)).isNotSameAs(loaded.getContent().get(0));
+
+    sessionFactory.inTransaction(session -> session.find(Item.class, 1L).setName("Renamed"));
+    Page<Item> reloaded = repository.findAll(params);
+    assertThat(reloaded.getContent()).hasSize(11);
+    assertThat(reloaded.getContent().get(0).getName()).isEqualTo("Renamed");
+  }
+
+  @Test
+  public void testParallelCountOfFullPage() {
+    ParallelQueries.configure(
+        sessionFactory, ParallelQueries.Settings.of(Runnable::run, 1, factory -> true));
+
+    CountedPage<Item> page = counted(repository.findAll(page(0, 3).withParallelCount(true)));
+
+    assertThat(page.isCountQueried()).isTrue();
+    assertThat(page.getTotalElements()).isEqualTo(10L);
+  }
+
+  @Test
+  public void testParallelCountCancelledOnShortPage() {
+    List<Runnable> submitted = new ArrayList<>();
+    ParallelQueries.Settings settings =
+        ParallelQueries.Settings.of(submitted::add, 1, factory -> true);
+    ParallelQueries.configure(sessionFactory, settings);
+
+    CountedPage<Item> page = counted(repository.findAll(page(0, 20).withParallelCount(true)));
+
+    assertThat(page.isCountQueried()).isFalse();
+    assertThat(page.getTotalElements()).isEqualTo(10L);
+    assertThat(submitted).hasSize(1);
+    assertThat(settings.permits().availablePermits()).isEqualTo(1);
+    submitted.forEach(Runnable::run);
+    assertThat(settings.permits().availablePermits()).isEqualTo(1);
+  }
+}
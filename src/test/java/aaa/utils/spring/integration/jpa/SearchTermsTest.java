@@ -0,0 +1,72 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+
+class SearchTermsTest {
+
+  @AfterEach
+  public void resetLimits() {
+    SearchTerms.setMaxVariants(SearchTerms.UNLIMITED);
+    SearchTerms.setMaxPredicates(SearchTerms.UNLIMITED);
+    SearchTerms.setNormalizer(null);
+    SearchTerms.setPredicateCountListener(count -> {});
+    SearchTerms.setTruncationListener(() -> {});
+  }
+
+  @Test
+  public void testUnlimitedByDefault() {
+    assertThat(SearchTerms.variantsPerWord(100)).isEqualTo(SearchTerms.UNLIMITED / 100);
+  }
+
+  @Test
+  public void testVariantsPerWord() {
+    SearchTerms.setMaxVariants(8);
+    SearchTerms.setMaxPredicates(32);
+    assertThat(SearchTerms.variantsPerWord(1)).isEqualTo(8);
+    assertThat(SearchTerms.variantsPerWord(5)).isEqualTo(6);
+    assertThat(SearchTerms.variantsPerWord(100)).isEqualTo(1);
+  }
+
+  @Test
+  public void testNormalizerGivesSingleVariant() {
+    SearchTerms.setNormalizer(String::toUpperCase);
+    assertThat(SearchTerms.variants("abc")).containsExactly("ABC");
+  }
+
+  @Test
+  public void testRecordedOncePerSearch() {
+    List<Integer> predicates = new ArrayList<>();
+    AtomicInteger truncations = new AtomicInteger();
+    SearchTerms.setPredicateCountListener(predicates::add);
+    SearchTerms.setTruncationListener(truncations::incrementAndGet);
+    SearchTerms.setMaxVariants(1);
+    SearchTerms.variants.put("apple", List.of("apple", "фззду"));
+    Specification<Item> spec = ItemFilter.builder().words("apple pear").build();
+    try (SessionFactory sessionFactory =
+        new Configuration()
+            .addAnnotatedClass(Item.class)
+            .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:terms")
+            .buildSessionFactory()) {
+      CriteriaBuilder cb = sessionFactory.getCriteriaBuilder();
+      CriteriaQuery<Item> page = cb.createQuery(Item.class);
+      spec.toPredicate(page.from(Item.class), page, cb);
+      CriteriaQuery<Long> count = cb.createQuery(Long.class);
+      spec.toPredicate(count.from(Item.class), count, cb);
+    }
+
+    assertThat(predicates).containsExactly(2);
+    assertThat(truncations.get()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,167 @@
+package aaa.utils.spring.integration.jpa;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.persistence.LockModeType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class SingleFlightTest {
+
+  static final int CALLERS = 8;
+  static final String KEY = "key";
+
+  final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+  final AtomicInteger calls = new AtomicInteger();
+
+  @BeforeEach
+  void enable() {
+    SingleFlight.setEnabled(true);
+  }
+
+  @AfterEach
+  void reset() {
+    executor.shutdownNow();
+    SingleFlight.setEnabled(false);
+    SingleFlight.inFlight.clear();
+  }
+
+  /** Each call waits for all callers still without result to follow it, the first ones fail */
+  Supplier<List<String>> loader(int failures) {
+    return () -> {
+      int call = calls.incrementAndGet();
+      awaitFollowers(CALLERS - call);
+      if (call <= failures) {
+        throw new IllegalStateException("Failed call " + call);
+      }
+      return List.of("value");
+    };
+  }
+
+  static void awaitFollowers(int followers) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (SingleFlight.inFlight.get(KEY).followers.get() < followers) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Callers didn't follow the leader");
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  List<Future<List<String>>> runConcurrently(Supplier<List<String>> loader) {
+    return IntStream.range(0, CALLERS)
+        .mapToObj(
+            i ->
+                executor.submit(
+                    () ->
+                        SingleFlight.execute(
+                            KEY, loader, (List<String> values) -> new ArrayList<>(values))))
+        .toList();
+  }
+
+  @Test
+  public void testLoadsOnce() throws Exception {
+    for (Future<List<String>> result : runConcurrently(loader(0))) {
+      assertThat(result.get()).containsExactly("value");
+    }
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFollowersGetOwnCopies() throws Exception {
+    Set<List<String>> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Future<List<String>> result : runConcurrently(loader(0))) {
+      distinct.add(result.get());
+    }
+    assertThat(distinct).hasSize(CALLERS);
+  }
+
+  @Test
+  public void testOneFollowerTakesOverFailedLeader() throws Exception {
+    int failed = 0;
+    for (Future<List<String>> result : runConcurrently(loader(1))) {
+      try {
+        assertThat(result.get()).containsExactly("value");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).hasMessage("Failed call 1");
+        failed++;
+      }
+    }
+    assertThat(failed).isEqualTo(1);
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testBypassedWithoutCanonicalFormOrWithLock() {
+    QueryParams<IAbstractPOJO<Long>> params =
+        QueryParams.<IAbstractPOJO<Long>>build().withSpec(IdFilter.forId(1L)).noFlush();
+    Specification<IAbstractPOJO<Long>> lambda = (root, query, cb) -> null;
+
+    assertThat(RepositoryWithEntityGraphImpl.coalescingKey(Data.class, "findAll", params))
+        .isPresent();
+    assertThat(
+            RepositoryWithEntityGraphImpl.coalescingKey(
+                Data.class, "findAll", params.withSpec(lambda)))
+        .isEmpty();
+    assertThat(
+            RepositoryWithEntityGraphImpl.coalescingKey(
+                Data.class, "findAll", params.withLockMode(LockModeType.PESSIMISTIC_READ)))
+        .isEmpty();
+    assertThat(
+            RepositoryWithEntityGraphImpl.coalescingKey(
+                Data.class, "findAll", params.withNoFlush(false)))
+        .isEmpty();
+  }
+
+  @Test
+  public void testBypassedInReadWriteTransaction() {
+    QueryParams<IAbstractPOJO<Long>> params =
+        QueryParams.<IAbstractPOJO<Long>>build().withSpec(IdFilter.forId(1L)).noFlush();
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+    try {
+      assertThat(RepositoryWithEntityGraphImpl.coalescingKey(Data.class, "count", params))
+          .isEmpty();
+      TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+      assertThat(RepositoryWithEntityGraphImpl.coalescingKey(Data.class, "count", params))
+          .isPresent();
+    } finally {
+      TransactionSynchronizationManager.clear();
+    }
+  }
+
+  @Test
+  public void testKeyCoversCountAndReplicaSettings() {
+    QueryParams<IAbstractPOJO<Long>> params =
+        QueryParams.<IAbstractPOJO<Long>>build().withSpec(IdFilter.forId(1L)).noFlush();
+    Set<Object> keys =
+        Set.of(
+            RepositoryWithEntityGraphImpl.coalescingKey(Data.class, "findAll", params).get(),
+            RepositoryWithEntityGraphImpl.coalescingKey(
+                    Data.class, "findAll", params.withNextPageOnly())
+                .get(),
+            RepositoryWithEntityGraphImpl.coalescingKey(
+                    Data.class, "findAll", params.withCachedCount(Duration.ofSeconds(5)))
+                .get(),
+            RepositoryWithEntityGraphImpl.coalescingKey(
+                    Data.class, "findAll", params.fromReplica(Duration.ofSeconds(3)))
+                .get());
+    assertThat(keys).hasSize(4);
+  }
+}